@@ -0,0 +1,151 @@
+package com.kowsoft.pokemongorater;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.kowsoft.pokemongorater.analysis.Cancellation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * One analysis thread shared by the app, alive while someone holds it: {@link #acquire()}
+ * starts it, the last {@link #release()} quits it once the queued work is done.
+ * <p>
+ * Jobs are submitted per key, usually the screen they analyze, and only the newest job of a key
+ * runs: submitting another one drops the previous one from the queue, or cancels it when it is
+ * already running. Jobs pass themselves as {@link Cancellation} to the analysis, which stops at
+ * the next stage.
+ */
+public final class AnalysisScheduler {
+
+    public abstract static class Job implements Cancellation, Runnable {
+        private volatile boolean cancelled = false;
+        private AnalysisScheduler scheduler;
+        private Object key;
+        // only touched on the scheduler thread
+        private boolean started = false;
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public final void run() {
+            if (started) {
+                return;
+            }
+            started = true;
+            if (cancelled) {
+                discard();
+                return;
+            }
+            try {
+                execute();
+            } catch (CancellationException e) {
+                Log.d(AnalysisScheduler.class.getSimpleName(), "Cancelled job for " + key);
+            } finally {
+                scheduler.finished(key, this);
+            }
+        }
+
+        /**
+         * Runs on the scheduler thread. Should check {@link #isCancelled()} before steps that
+         * are only worth doing for the newest request.
+         */
+        protected abstract void execute();
+
+        /**
+         * Runs on the scheduler thread instead of {@link #execute()} when the job was cancelled
+         * before it started, e.g. to free what it was handed.
+         */
+        protected void discard() {
+        }
+    }
+
+    private static AnalysisScheduler instance;
+    private static int users = 0;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Map<Object, Job> latest = new HashMap<>();
+
+    private AnalysisScheduler() {
+        thread = new HandlerThread("AnalysisScheduler");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized AnalysisScheduler acquire() {
+        if (instance == null) {
+            instance = new AnalysisScheduler();
+        }
+        users++;
+        return instance;
+    }
+
+    public void release() {
+        synchronized (AnalysisScheduler.class) {
+            if (--users > 0) {
+                return;
+            }
+            instance = null;
+        }
+        thread.quitSafely();
+    }
+
+    /**
+     * Queues {@code job} as the newest request for {@code key}.
+     */
+    public void submit(Object key, Job job) {
+        job.scheduler = this;
+        job.key = key;
+        Job previous;
+        synchronized (latest) {
+            previous = latest.put(key, job);
+        }
+        if (previous != null) {
+            drop(previous);
+        }
+        handler.post(job);
+    }
+
+    /**
+     * Cancels the jobs of {@code key}, e.g. when its screen is closed.
+     */
+    public void cancel(Object key) {
+        Job job;
+        synchronized (latest) {
+            job = latest.remove(key);
+        }
+        if (job != null) {
+            drop(job);
+        }
+    }
+
+    /**
+     * Runs {@code runnable} on the scheduler thread after the work already queued, e.g. to
+     * release what the jobs used. Cannot be cancelled.
+     */
+    public void post(Runnable runnable) {
+        handler.post(runnable);
+    }
+
+    private void drop(Job job) {
+        job.cancelled = true;
+        handler.removeCallbacks(job);
+        // a job that was still queued is discarded, one that runs already sees it is cancelled
+        handler.post(job);
+    }
+
+    private void finished(Object key, Job job) {
+        synchronized (latest) {
+            if (latest.get(key) == job) {
+                latest.remove(key);
+            }
+        }
+    }
+}
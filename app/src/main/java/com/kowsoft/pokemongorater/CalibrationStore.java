@@ -0,0 +1,59 @@
+package com.kowsoft.pokemongorater;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.kowsoft.pokemongorater.analysis.ArcCalibration;
+import com.kowsoft.pokemongorater.analysis.ArcCircle;
+
+/**
+ * Persists the level arc calibration of each display configuration, keyed by
+ * width, height and densityDpi.
+ */
+public class CalibrationStore {
+    private static final String PREFS_FILE = "arc_calibration";
+
+    private final SharedPreferences prefs;
+
+    public CalibrationStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE);
+    }
+
+    public ArcCalibration load(int width, int height, int densityDpi) {
+        String key = key(width, height, densityDpi);
+        return new ArcCalibration(width, height, densityDpi,
+                loadCircle(key + "_circle"),
+                loadCircle(key + "_candidate"),
+                prefs.getInt(key + "_candidate_detections", 0));
+    }
+
+    public void save(ArcCalibration calibration) {
+        String key = key(calibration.getWidth(), calibration.getHeight(), calibration.getDensityDpi());
+        SharedPreferences.Editor editor = prefs.edit();
+        saveCircle(editor, key + "_circle", calibration.getCircle());
+        saveCircle(editor, key + "_candidate", calibration.getCandidate());
+        editor.putInt(key + "_candidate_detections", calibration.getCandidateDetections());
+        editor.apply();
+    }
+
+    private ArcCircle loadCircle(String key) {
+        if (!prefs.contains(key + "_r")) {
+            return null;
+        }
+        return new ArcCircle(prefs.getFloat(key + "_x", 0), prefs.getFloat(key + "_y", 0), prefs.getFloat(key + "_r", 0));
+    }
+
+    private static void saveCircle(SharedPreferences.Editor editor, String key, ArcCircle circle) {
+        if (circle == null) {
+            editor.remove(key + "_x").remove(key + "_y").remove(key + "_r");
+        } else {
+            editor.putFloat(key + "_x", (float) circle.getX())
+                    .putFloat(key + "_y", (float) circle.getY())
+                    .putFloat(key + "_r", (float) circle.getRadius());
+        }
+    }
+
+    private static String key(int width, int height, int densityDpi) {
+        return width + "x" + height + "@" + densityDpi;
+    }
+}
@@ -0,0 +1,68 @@
+package com.kowsoft.pokemongorater;
+
+import android.graphics.Bitmap;
+
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In memory handoff of captured screens between components of the app process. Intents only
+ * carry the frame id. The receiver removes the frame once it loaded it, and only the latest
+ * {@link #MAX_FRAMES} frames are kept, so a frame that is never loaded cannot pile up. A frame
+ * may come with the fused gray top half of a burst.
+ */
+public final class FrameStore {
+    public static final String EXTRA_FRAME_ID = "com.kowsoft.pokemongorater.FRAME_ID";
+    public static final long NO_FRAME = -1;
+
+    private static final int MAX_FRAMES = 2;
+
+    private static long nextId = 0;
+    private static final Map<Long, Entry> frames = new LinkedHashMap<Long, Entry>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_FRAMES;
+        }
+    };
+
+    private static class Entry {
+        final Bitmap frame;
+        final GrayFrame fused;
+
+        Entry(Bitmap frame, GrayFrame fused) {
+            this.frame = frame;
+            this.fused = fused;
+        }
+    }
+
+    private FrameStore() {
+    }
+
+    public static synchronized long put(Bitmap frame, GrayFrame fused) {
+        long id = nextId++;
+        frames.put(id, new Entry(frame, fused));
+        return id;
+    }
+
+    /**
+     * Returns the frame, or null if it was removed or evicted.
+     */
+    public static synchronized Bitmap get(long id) {
+        Entry entry = frames.get(id);
+        return entry != null ? entry.frame : null;
+    }
+
+    /**
+     * Returns the fused burst of the frame, or null if it was captured alone.
+     */
+    public static synchronized GrayFrame getFused(long id) {
+        Entry entry = frames.get(id);
+        return entry != null ? entry.fused : null;
+    }
+
+    public static synchronized void remove(long id) {
+        frames.remove(id);
+    }
+}
@@ -0,0 +1,215 @@
+package com.kowsoft.pokemongorater;
+
+import android.media.Image;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.DetailScreenClassifier;
+import com.kowsoft.pokemongorater.analysis.FrameSignature;
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+import com.kowsoft.pokemongorater.analysis.JavaArcEngine;
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams screen frames through {@link JavaArcEngine} at a steady rate. Only the latest frame
+ * is kept: a frame that arrives while the previous one is still waiting replaces it. The
+ * analysis runs on a background priority thread and the capture interval is stretched so the
+ * work per frame, the classifier and the copy on the capture thread plus the analysis, uses at
+ * most {@link #CPU_BUDGET} of one core. Frames whose level arc {@link FrameSignature} is
+ * close to the last analyzed one are not analyzed again, and frames that are not a Pokémon
+ * detail screen are rejected by {@link DetailScreenClassifier} before they are even copied,
+ * unless that check is turned off.
+ * Frames that pass are copied as a {@link GrayFrame}, just the luminance of the top half.
+ */
+public class LiveRater {
+
+    public interface Listener {
+        /**
+         * Called on the handler given to the constructor.
+         */
+        void onAnalysis(ArcAnalysis analysis);
+    }
+
+    public static final long DEFAULT_INTERVAL_MS = 500;
+    public static final double CPU_BUDGET = 0.25;
+
+    private final ScreenCaptureService captureService;
+    private final Handler handler;
+    private final Listener listener;
+    private final long intervalMs;
+    private final JavaArcEngine engine;
+
+    private HandlerThread analysisThread;
+    private Handler analysisHandler;
+    private volatile boolean running = false;
+    private volatile boolean detailScreenCheck = true;
+    // thread CPU time of the last frame on either thread
+    private volatile long captureCpuMs = 0;
+    private volatile long analysisCpuMs = 0;
+
+    // frame hand over from the capture thread to the analysis thread
+    private final Object frameLock = new Object();
+    private GrayFrame pendingFrame;
+    private GrayFrame spareFrame;
+    private int droppedFrames = 0;
+
+    // only touched on the analysis thread
+    private FrameSignature lastSignature;
+    private ArcAnalysis lastResult;
+    private int skippedFrames = 0;
+
+    /**
+     * {@code handler} runs the capture ticks and receives the results, usually the main thread.
+     */
+    public LiveRater(ScreenCaptureService captureService, Handler handler, int trainerLevel, long intervalMs, Listener listener) {
+        this.captureService = captureService;
+        this.handler = handler;
+        this.listener = listener;
+        this.intervalMs = intervalMs;
+        this.engine = new JavaArcEngine(trainerLevel);
+    }
+
+    /**
+     * Whether frames that {@link DetailScreenClassifier} rejects are skipped, on by default.
+     */
+    public void setDetailScreenCheck(boolean detailScreenCheck) {
+        this.detailScreenCheck = detailScreenCheck;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        analysisThread = new HandlerThread("LiveRater", Process.THREAD_PRIORITY_BACKGROUND);
+        analysisThread.start();
+        analysisHandler = new Handler(analysisThread.getLooper());
+        running = true;
+        handler.post(tick);
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        handler.removeCallbacks(tick);
+        analysisThread.quitSafely();
+        analysisThread = null;
+        Log.d(this.getClass().getSimpleName(), "Stopped. Dropped frames: " + droppedFrames + " unchanged frames: " + skippedFrames);
+    }
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            captureService.captureImage(new ScreenCaptureSession.FrameListener() {
+                @Override
+                public void onFrame(Image image) {
+                    offerFrame(image);
+                }
+            });
+            // stretch the interval when the last frame would exceed the CPU budget
+            handler.postDelayed(this, Math.max(intervalMs, Math.round((captureCpuMs + analysisCpuMs) / CPU_BUDGET)));
+        }
+    };
+
+    private void offerFrame(Image image) {
+        if (!running) {
+            return;
+        }
+        long cpuStart = SystemClock.currentThreadTimeMillis();
+        try {
+            copyFrame(image);
+        } finally {
+            captureCpuMs = SystemClock.currentThreadTimeMillis() - cpuStart;
+        }
+    }
+
+    private void copyFrame(Image image) {
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer buffer = plane.getBuffer();
+        long begin;
+        if (detailScreenCheck) {
+            begin = PipelineMetrics.begin(PipelineMetrics.CLASSIFY);
+            boolean detailScreen = DetailScreenClassifier.isDetailScreen(buffer, image.getWidth(), image.getHeight(), plane.getRowStride(), plane.getPixelStride());
+            PipelineMetrics.end(PipelineMetrics.CLASSIFY, begin);
+            if (!detailScreen) {
+                deliver(ArcAnalysis.invalid());
+                return;
+            }
+        }
+        synchronized (frameLock) {
+            GrayFrame frame = spareFrame != null ? spareFrame : new GrayFrame();
+            begin = PipelineMetrics.begin(PipelineMetrics.FRAME_COPY);
+            frame.copyRgba(buffer, image.getWidth(), image.getHeight(), plane.getRowStride(), plane.getPixelStride());
+            PipelineMetrics.end(PipelineMetrics.FRAME_COPY, begin);
+            if (pendingFrame != null) {
+                droppedFrames++;
+            }
+            spareFrame = pendingFrame;
+            pendingFrame = frame;
+        }
+        analysisHandler.post(analyzeLatest);
+    }
+
+    private final Runnable analyzeLatest = new Runnable() {
+        @Override
+        public void run() {
+            GrayFrame frame;
+            synchronized (frameLock) {
+                if (pendingFrame == null) {
+                    return;
+                }
+                frame = pendingFrame;
+                pendingFrame = null;
+            }
+            long cpuStart = SystemClock.currentThreadTimeMillis();
+            long begin = PipelineMetrics.begin(PipelineMetrics.FRAME_SIGNATURE);
+            boolean unchanged = lastSignature != null && lastSignature.isCloseTo(lastSignature.of(frame));
+            PipelineMetrics.end(PipelineMetrics.FRAME_SIGNATURE, begin);
+            ArcAnalysis result;
+            if (unchanged) {
+                skippedFrames++;
+                result = lastResult;
+            } else {
+                begin = PipelineMetrics.begin(PipelineMetrics.LIVE_ANALYSIS);
+                result = engine.analyzeGray(frame);
+                PipelineMetrics.end(PipelineMetrics.LIVE_ANALYSIS, begin);
+                // signed around the arc just found, frames without one are always analyzed
+                lastSignature = FrameSignature.ofGray(frame, result);
+                lastResult = result;
+            }
+            analysisCpuMs = SystemClock.currentThreadTimeMillis() - cpuStart;
+            synchronized (frameLock) {
+                if (spareFrame == null) {
+                    spareFrame = frame;
+                }
+            }
+            // also when unchanged: a rejected frame in between may have replaced the label
+            deliver(result);
+        }
+    };
+
+    private void deliver(final ArcAnalysis analysis) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (running) {
+                    listener.onAnalysis(analysis);
+                }
+            }
+        });
+    }
+}
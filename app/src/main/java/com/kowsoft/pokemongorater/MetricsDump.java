@@ -0,0 +1,64 @@
+package com.kowsoft.pokemongorater;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Android side of {@link PipelineMetrics}: timed stages become systrace sections, and the
+ * report is written to {@code Android/data/<package>/files/pipeline_metrics.txt}, e.g. for
+ * {@code adb pull}. Debug builds also log Mats that were garbage collected unreleased.
+ */
+public class MetricsDump {
+    public static final String EXTRA_TAP_TIME = "com.kowsoft.pokemongorater.TAP_TIME";
+    private static final String FILE_NAME = "pipeline_metrics.txt";
+
+    private MetricsDump() {
+    }
+
+    public static void install() {
+        PipelineMetrics.setTracer(new PipelineMetrics.Tracer() {
+            @Override
+            public void beginSection(String name) {
+                Trace.beginSection(name);
+            }
+
+            @Override
+            public void endSection() {
+                Trace.endSection();
+            }
+        });
+        if (BuildConfig.DEBUG) {
+            Mat.setLeakListener(new Mat.LeakListener() {
+                @Override
+                public void onLeak(long bytes, Throwable allocationSite) {
+                    Log.w(MetricsDump.class.getSimpleName(), "Mat of " + bytes + " bytes was never released", allocationSite);
+                }
+            });
+        }
+    }
+
+    public static void write(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        File file = new File(dir, FILE_NAME);
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("build: " + BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ") on " + Build.MODEL + ", API " + Build.VERSION.SDK_INT + "\n");
+            writer.write(PipelineMetrics.report());
+        } catch (IOException e) {
+            Log.e(MetricsDump.class.getSimpleName(), "Could not write metrics to " + file, e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.kowsoft.pokemongorater;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.util.Log;
+
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.LevelArc;
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
+import org.opencv.android.OpenCVLoader;
+
+/**
+ * Loads the OpenCV native libraries packaged in the APK with {@link OpenCVLoader#initDebug()},
+ * without binding to the OpenCV Manager, and warms the analysis up on a synthetic detail
+ * screen, so the first capture does not pay for library loading, class loading and the first
+ * calls into native code. When the APK was built without the libraries the OpenCV Manager is
+ * still used, it reports through {@link #setLoaded}.
+ */
+public final class OpenCvStartup {
+    private static final int WARM_UP_TRAINER_LEVEL = 30;
+    private static final double WARM_UP_POKEMON_LEVEL = 20;
+
+    private static volatile boolean loaded = false;
+    private static boolean packagedTried = false;
+    private static boolean warmedUp = false;
+
+    private OpenCvStartup() {
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * For the OpenCV Manager connection, the fallback when nothing is packaged.
+     */
+    public static void setLoaded() {
+        loaded = true;
+    }
+
+    /**
+     * Loads the packaged libraries on the first call, blocking. Returns whether OpenCV is
+     * loaded, by this or an earlier call or the OpenCV Manager.
+     */
+    public static synchronized boolean loadPackaged() {
+        if (!loaded && !packagedTried) {
+            packagedTried = true;
+            long begin = PipelineMetrics.begin(PipelineMetrics.OPENCV_LOAD);
+            loaded = OpenCVLoader.initDebug();
+            PipelineMetrics.end(PipelineMetrics.OPENCV_LOAD, begin);
+            Log.d(OpenCvStartup.class.getSimpleName(), "Packaged OpenCV libraries loaded: " + loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Analyzes a synthetic screen of {@code width} x {@code height} once, with OpenCV if
+     * {@code openCV} is set and the packaged libraries load, with the Java engine otherwise. The
+     * buffers of that size stay pooled for the first capture. Blocking, call it on a background
+     * thread; later calls return right away.
+     */
+    public static void warmUp(Context context, int width, int height, boolean openCV) {
+        boolean withOpenCV = openCV && loadPackaged();
+        synchronized (OpenCvStartup.class) {
+            if (warmedUp) {
+                return;
+            }
+            warmedUp = true;
+        }
+        long begin = PipelineMetrics.begin(PipelineMetrics.WARM_UP);
+        Bitmap screen = syntheticScreen(width, height);
+        // the calibrated search is what captures will run, the calibration is not saved
+        PokemonScreenAnalyzer analyzer = new PokemonScreenAnalyzer(screen,
+                new CalibrationStore(context).load(width, height, context.getResources().getDisplayMetrics().densityDpi), !withOpenCV);
+        ArcAnalysis analysis;
+        try {
+            analysis = analyzer.analyze(WARM_UP_TRAINER_LEVEL);
+        } finally {
+            analyzer.release();
+            screen.recycle();
+        }
+        PipelineMetrics.end(PipelineMetrics.WARM_UP, begin);
+        Log.d(OpenCvStartup.class.getSimpleName(), "Warmed up " + (withOpenCV ? "OpenCV" : "Java engine") + ", level: " + analysis.getLevel());
+    }
+
+    // Detail screen lookalike: gradient background, white level arc with the marker, white card below
+    private static Bitmap syntheticScreen(int width, int height) {
+        Bitmap screen = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(screen);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, 0, height, Color.rgb(80, 120, 140), Color.rgb(140, 180, 200), Shader.TileMode.CLAMP));
+        canvas.drawRect(0, 0, width, height, paint);
+        paint.setShader(null);
+        paint.setColor(Color.rgb(240, 240, 240));
+        canvas.drawRect(0, height * 0.55f, width, height, paint);
+
+        float scale = width / 720f;
+        float cx = width / 2f;
+        float cy = 420 * scale;
+        float radius = 270 * scale;
+        paint.setColor(Color.WHITE);
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(4 * scale);
+        canvas.drawArc(new RectF(cx - radius, cy - radius, cx + radius, cy + radius), 180, 180, false, paint);
+        double angle = LevelArc.angle(WARM_UP_TRAINER_LEVEL, WARM_UP_POKEMON_LEVEL);
+        paint.setStyle(Paint.Style.FILL);
+        canvas.drawCircle(cx + radius * (float) Math.cos(angle), cy - radius * (float) Math.sin(angle), 10 * scale, paint);
+        return screen;
+    }
+}
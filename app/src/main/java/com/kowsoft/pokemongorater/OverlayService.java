@@ -5,14 +5,15 @@ import android.app.Service;
 import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
-import android.media.projection.MediaProjectionManager;
-import android.net.Uri;
+import android.graphics.Point;
 import android.os.Binder;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.MenuItem;
@@ -20,19 +21,45 @@ import android.view.View;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.PopupMenu;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.ArcCalibration;
+import com.kowsoft.pokemongorater.analysis.ArcPipeline;
+import com.kowsoft.pokemongorater.analysis.ArcSession;
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
 
+import org.opencv.android.InstallCallbackInterface;
+import org.opencv.android.LoaderCallbackInterface;
+import org.opencv.android.OpenCVLoader;
+
+/**
+ * The floating Poké Captor button. A capture is analyzed right here on the shared
+ * {@link AnalysisScheduler} and the level is shown in a small window next to the button; the
+ * {@link PokemonAnalysisActivity} is started when the result is tapped, or right away when
+ * the debug screen is enabled. With OpenCV the capture is copied straight into the Mat it
+ * analyzes, and a bitmap is only built when the result is tapped. OpenCV is loaded from the APK and warmed up on the scheduler
+ * thread when the service starts; without packaged libraries the OpenCV Manager is bound, and
+ * until it connects the analysis runs with the Java engine.
+ */
 public class OverlayService extends Service {
     private static final long SCREENSHOT_DELAY_MS = 100;
+    public static final String LIVE_INTERVAL_KEY = "live_interval_ms";
+    public static final String BURST_FRAMES_KEY = "burst_frames";
     private final CaptureServiceConnection captureServiceConnection = new CaptureServiceConnection();
 
     private Handler handler;
     private Button button;
     private ScreenCaptureService screenCaptureService;
+    private TextView liveLabel;
+    private LiveRater liveRater;
+    private TextView resultLabel;
+    // keeps the screen of the shown result for the analysis screen
+    private PokemonScreenAnalyzer resultAnalyzer;
+    private AnalysisScheduler scheduler;
+    private CalibrationStore calibrationStore;
 
     public class LocalBinder extends Binder {
         public OverlayService getService() {
@@ -50,6 +77,9 @@ public class OverlayService extends Service {
         super.onCreate();
 
         handler = new Handler();
+        scheduler = AnalysisScheduler.acquire();
+        calibrationStore = new CalibrationStore(this);
+        warmUp();
 
         bindService(new Intent(this, ScreenCaptureService.class), captureServiceConnection, BIND_AUTO_CREATE);
 
@@ -77,6 +107,16 @@ public class OverlayService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        stopLiveRater();
+        hideResult();
+        scheduler.cancel(this);
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                ArcSession.releasePooled();
+            }
+        });
+        scheduler.release();
         unbindService(captureServiceConnection);
         if (button != null) {
             getWindowManager().removeView(button);
@@ -93,6 +133,13 @@ public class OverlayService extends Service {
                     case R.id.capture:
                         capturePokemonData();
                         break;
+                    case R.id.live:
+                        if (liveRater != null) {
+                            stopLiveRater();
+                        } else {
+                            startLiveRater();
+                        }
+                        break;
                     case R.id.quit:
                         stopSelf();
                         break;
@@ -101,22 +148,44 @@ public class OverlayService extends Service {
             }
         });
         popup.inflate(R.menu.rater_menu);
+        popup.getMenu().findItem(R.id.live).setChecked(liveRater != null);
         popup.show();
     }
 
     private void capturePokemonData() {
+        final long tapTime = SystemClock.elapsedRealtimeNanos();
+        hideResult();
         button.setVisibility(View.INVISIBLE);
         // we need a delay, otherwise the menu will be shown in the screenshot
         handler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                if (screenCaptureService != null) {
+                PipelineMetrics.record(PipelineMetrics.HIDE_DELAY, SystemClock.elapsedRealtimeNanos() - tapTime);
+                SharedPreferences sp = getPreferences();
+                int burstFrames = sp.getInt(BURST_FRAMES_KEY, ScreenCaptureService.DEFAULT_BURST_FRAMES);
+                boolean bitmapNeeded = sp.getBoolean(PokemonAnalysisActivity.DEBUG_SCREEN_KEY, false)
+                        || sp.getBoolean(PokemonAnalysisActivity.JAVA_ENGINE_KEY, false) || !OpenCvStartup.isLoaded();
+                if (screenCaptureService != null && !bitmapNeeded) {
+                    // a burst of one frame just has its own gray top half as the fused frame
+                    screenCaptureService.captureBurstMat(Math.max(1, burstFrames), new ScreenCaptureService.CaptureMatCallback() {
+                        @Override
+                        public void onBurstReady(ArcSession session, boolean detailScreen, GrayFrame fused, int frames) {
+                            analyze(null, session, detailScreen, fused, tapTime);
+                        }
+                    });
+                } else if (screenCaptureService != null && burstFrames > 1) {
+                    // a few frames fused, in case the Pokémon covers part of the arc in one
+                    screenCaptureService.captureBurst(burstFrames, new ScreenCaptureService.CaptureBurstCallback() {
+                        @Override
+                        public void onBurstReady(Bitmap screen, GrayFrame fused, int frames) {
+                            onScreenCaptured(screen, fused, tapTime);
+                        }
+                    });
+                } else if (screenCaptureService != null) {
                     screenCaptureService.captureScreen(new ScreenCaptureService.CaptureScreenCallback() {
                         @Override
                         public void onScreenReady(final Bitmap screen) {
-                            Uri uri = saveImageFile(screen);
-                            startPokemonAnalysisActivity(uri);
-                            screen.recycle();
+                            onScreenCaptured(screen, null, tapTime);
                         }
 
                     });
@@ -128,33 +197,228 @@ public class OverlayService extends Service {
         }, SCREENSHOT_DELAY_MS);
     }
 
-    private void startPokemonAnalysisActivity(Uri uri) {
-        Intent intent = new Intent(this, PokemonAnalysisWrapperActivity.class);
-        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        intent.setDataAndType(uri, "image/*");
-        startActivity(intent);
+    private void onScreenCaptured(Bitmap screen, GrayFrame fused, long tapTime) {
+        if (getPreferences().getBoolean(PokemonAnalysisActivity.DEBUG_SCREEN_KEY, false)) {
+            startPokemonAnalysisActivity(FrameStore.put(screen, fused), tapTime);
+        } else {
+            analyze(screen, null, true, fused, tapTime);
+        }
+    }
+
+    private void warmUp() {
+        final Point size = new Point();
+        getWindowManager().getDefaultDisplay().getSize(size);
+        final boolean openCV = !getPreferences().getBoolean(PokemonAnalysisActivity.JAVA_ENGINE_KEY, false);
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                OpenCvStartup.warmUp(OverlayService.this, size.x, size.y, openCV);
+                if (openCV && !OpenCvStartup.isLoaded()) {
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_3_1_0, OverlayService.this, openCVCallback);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Analyzes either the bitmap {@code screen} or the screen Mat of {@code screenMat}, which
+     * the detail screen classifier judged as {@code detailScreen}.
+     */
+    private void analyze(final Bitmap screen, final ArcSession screenMat, final boolean detailScreen, final GrayFrame fused, final long tapTime) {
+        SharedPreferences sp = getPreferences();
+        final int trainerLevel = sp.getInt(PokemonAnalysisActivity.TRAINER_LEVEL_KEY, 1);
+        final boolean javaEngine = sp.getBoolean(PokemonAnalysisActivity.JAVA_ENGINE_KEY, false);
+        final boolean polarProfile = sp.getBoolean(PokemonAnalysisActivity.POLAR_PROFILE_KEY, false);
+        final boolean detailScreenCheck = sp.getBoolean(PokemonAnalysisActivity.DETAIL_SCREEN_CHECK_KEY, true);
+        scheduler.submit(this, new AnalysisScheduler.Job() {
+            @Override
+            protected void execute() {
+                int width = screenMat != null ? screenMat.getWidth() : screen.getWidth();
+                int height = screenMat != null ? screenMat.getHeight() : screen.getHeight();
+                ArcCalibration calibration = calibrationStore.load(width, height, getResources().getDisplayMetrics().densityDpi);
+                PokemonScreenAnalyzer analyzer;
+                if (screenMat != null) {
+                    analyzer = new PokemonScreenAnalyzer(screenMat, detailScreen, calibration);
+                } else {
+                    // runs after the warm up, which loaded OpenCV if it is packaged
+                    boolean withoutOpenCV = javaEngine || !OpenCvStartup.isLoaded();
+                    analyzer = new PokemonScreenAnalyzer(screen, calibration, withoutOpenCV);
+                }
+                analyzer.setFusedFrame(fused);
+                analyzer.setDetailScreenCheck(detailScreenCheck);
+                if (polarProfile) {
+                    analyzer.setLevelMethod(ArcPipeline.LevelMethod.POLAR_PROFILE);
+                }
+                ArcAnalysis result = ArcAnalysis.invalid();
+                try {
+                    result = analyzer.analyze(trainerLevel, this);
+                    calibrationStore.save(calibration);
+                    PipelineMetrics.record(PipelineMetrics.TAP_TO_RESULT, SystemClock.elapsedRealtimeNanos() - tapTime);
+                    MetricsDump.write(OverlayService.this);
+                } finally {
+                    if (isCancelled()) {
+                        analyzer.release();
+                    } else {
+                        showResult(result, analyzer, fused);
+                    }
+                }
+            }
+
+            @Override
+            protected void discard() {
+                if (screenMat != null) {
+                    screenMat.recycle();
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows the level next to the button, the analyzer is kept with it until it is hidden.
+     */
+    private void showResult(final ArcAnalysis result, final PokemonScreenAnalyzer analyzer, final GrayFrame fused) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (button == null) {
+                    analyzer.release();
+                    return;
+                }
+                button.setVisibility(View.VISIBLE);
+                hideResult();
+                resultAnalyzer = analyzer;
+                resultLabel = new TextView(OverlayService.this);
+                if (result.isValid() && result.getLevel() > 0) {
+                    resultLabel.setText("Pokémon Level: " + result.getLevel());
+                } else {
+                    resultLabel.setText("Could not determine Pokémon Level");
+                }
+                resultLabel.setBackgroundColor(0x80000000);
+                resultLabel.setTextColor(0xffffffff);
+                resultLabel.setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        long frameId = FrameStore.put(analyzer.getScreen(), fused);
+                        hideResult();
+                        startPokemonAnalysisActivity(frameId, 0);
+                    }
+                });
+                WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                        WindowManager.LayoutParams.WRAP_CONTENT,
+                        WindowManager.LayoutParams.WRAP_CONTENT,
+                        WindowManager.LayoutParams.TYPE_PHONE,
+                        WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL |
+                                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
+                        PixelFormat.TRANSLUCENT);
+                // right next to the button
+                params.gravity = Gravity.LEFT | Gravity.TOP;
+                params.x = button.getWidth();
+                getWindowManager().addView(resultLabel, params);
+            }
+        });
+    }
+
+    private void hideResult() {
+        if (resultLabel != null) {
+            getWindowManager().removeView(resultLabel);
+            resultLabel = null;
+        }
+        if (resultAnalyzer != null) {
+            resultAnalyzer.release();
+            resultAnalyzer = null;
+        }
+    }
+
+    private void startLiveRater() {
+        if (screenCaptureService == null) {
+            Toast.makeText(this, "Could not find screen capture service.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        SharedPreferences sp = getPreferences();
+        int trainerLevel = sp.getInt(PokemonAnalysisActivity.TRAINER_LEVEL_KEY, 1);
+        long intervalMs = sp.getLong(LIVE_INTERVAL_KEY, LiveRater.DEFAULT_INTERVAL_MS);
+
+        liveLabel = new TextView(this);
+        liveLabel.setText("Live rater: waiting");
+        liveLabel.setBackgroundColor(0x80000000);
+        liveLabel.setTextColor(0xffffffff);
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.TYPE_PHONE,
+                WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE |
+                        WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
+                PixelFormat.TRANSLUCENT);
+        // the analysis only looks at the top half of the screen
+        params.gravity = Gravity.CENTER_HORIZONTAL | Gravity.BOTTOM;
+        getWindowManager().addView(liveLabel, params);
+
+        liveRater = new LiveRater(screenCaptureService, handler, trainerLevel, intervalMs, new LiveRater.Listener() {
+            @Override
+            public void onAnalysis(ArcAnalysis analysis) {
+                if (analysis.isValid() && analysis.getLevel() > 0) {
+                    liveLabel.setText("Pokémon Level: " + analysis.getLevel());
+                } else {
+                    liveLabel.setText("Live rater: no level arc");
+                }
+            }
+        });
+        liveRater.setDetailScreenCheck(sp.getBoolean(PokemonAnalysisActivity.DETAIL_SCREEN_CHECK_KEY, true));
+        liveRater.start();
     }
 
-    private Uri saveImageFile(Bitmap screen) {
-        File imageFile = new File(getFilesDir(), "tmp_screenshot");
-        Uri uri = Uri.fromFile(imageFile);
-        try (FileOutputStream outputStream = new FileOutputStream(imageFile);) {
-            screen.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
-            outputStream.flush();
-        } catch (IOException e) {
-            Log.e(this.getClass().getSimpleName(), "Exception in saving image file", e);
+    private void stopLiveRater() {
+        if (liveRater != null) {
+            liveRater.stop();
+            liveRater = null;
+        }
+        if (liveLabel != null) {
+            getWindowManager().removeView(liveLabel);
+            liveLabel = null;
         }
-        return uri;
+    }
+
+    private void startPokemonAnalysisActivity(long frameId, long tapTime) {
+        Intent intent = new Intent(this, PokemonAnalysisWrapperActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        intent.putExtra(FrameStore.EXTRA_FRAME_ID, frameId);
+        intent.putExtra(MetricsDump.EXTRA_TAP_TIME, tapTime);
+        startActivity(intent);
     }
 
     private WindowManager getWindowManager() {
         return (WindowManager) getSystemService(WINDOW_SERVICE);
     }
 
+    private SharedPreferences getPreferences() {
+        return getSharedPreferences(PokemonAnalysisActivity.PREFS_FILE, MODE_PRIVATE);
+    }
+
     private void runOnUiThread(Runnable runnable) {
         handler.post(runnable);
     }
 
+    // no dialogs from a service, the analysis screen offers to install the OpenCV Manager
+    private final LoaderCallbackInterface openCVCallback = new LoaderCallbackInterface() {
+        @Override
+        public void onManagerConnected(int status) {
+            if (status == LoaderCallbackInterface.SUCCESS) {
+                OpenCvStartup.setLoaded();
+            }
+            Log.d(OverlayService.class.getSimpleName(), "OpenCV Manager status: " + status);
+        }
+
+        @Override
+        public void onPackageInstall(int operation, InstallCallbackInterface callback) {
+            callback.cancel();
+        }
+    };
+
     private class CaptureServiceConnection implements ServiceConnection {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
@@ -197,7 +461,8 @@ public class OverlayService extends Service {
         public void onServiceConnected(ComponentName name, IBinder service) {
             overlayService = ((LocalBinder) service).getService();
             Intent intent = new Intent(this, PokemonAnalysisActivity.class);
-            intent.setDataAndType(getIntent().getData(), getIntent().getType());
+            intent.putExtra(FrameStore.EXTRA_FRAME_ID, getIntent().getLongExtra(FrameStore.EXTRA_FRAME_ID, FrameStore.NO_FRAME));
+            intent.putExtra(MetricsDump.EXTRA_TAP_TIME, getIntent().getLongExtra(MetricsDump.EXTRA_TAP_TIME, 0));
             startActivityForResult(intent, POKEMON_ANALYSIS_REQUEST);
         }
 
@@ -8,8 +8,7 @@ import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
@@ -20,6 +19,12 @@ import android.widget.NumberPicker;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.ArcCalibration;
+import com.kowsoft.pokemongorater.analysis.ArcPipeline;
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
@@ -30,19 +35,33 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
 
     public static final String PREFS_FILE = "preferences";
     public static final String TRAINER_LEVEL_KEY = "trainer_level";
+    public static final String JAVA_ENGINE_KEY = "java_engine";
+    public static final String POLAR_PROFILE_KEY = "polar_profile";
+    public static final String DEBUG_SCREEN_KEY = "debug_screen";
+    public static final String DETAIL_SCREEN_CHECK_KEY = "detail_screen_check";
     private static final int MIN_TRAINER_LVL = 1;
     private static final int MAX_TRAINER_LVL = 40;
+    // the debug image is shown well below screen size, no need to render it at full resolution
+    private static final int DEBUG_DOWNSCALE = 2;
 
-    private Handler handler;
+    private AnalysisScheduler scheduler;
     private Bitmap inputBmp;
+    private GrayFrame fusedFrame;
+    private CalibrationStore calibrationStore;
+    // only used on the scheduler thread
+    private PokemonScreenAnalyzer analyzer;
+    private ArcCalibration calibration;
     private boolean openCVLoaded = false;
+    private boolean openCVLoading = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_pokemon_analysis);
 
-        createLooperThread();
+        MetricsDump.install();
+        scheduler = AnalysisScheduler.acquire();
+        calibrationStore = new CalibrationStore(this);
 
         findViewById(R.id.dismiss).setOnClickListener(new View.OnClickListener() {
             @Override
@@ -70,8 +89,9 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
         if (inputBmp == null) {
             Toast.makeText(this, "Could not load Pokémon image.", Toast.LENGTH_SHORT).show();
             finish();
-        } else {
-            OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_3_1_0, this, getOpenCVLoadedHandler());
+        } else if (useJavaEngine()) {
+            updateShownTrainerLevel(getTrainerLevel());
+            triggerPokemonDataAnalysis();
         }
 
     }
@@ -81,12 +101,36 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
                 .trainerLevel(getTrainerLevel())
                 .outputText(((TextView) findViewById(R.id.pokemonLevelText)).getText().toString())
                 .inputImageUri(getInputImageUri())
+                .inputImage(inputBmp)
                 .build());
     }
 
     @Override
     protected void onResume() {
-        OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_3_1_0, this, getOpenCVLoadedHandler());
+        if (!useJavaEngine() && !openCVLoaded && !openCVLoading && !isFinishing()) {
+            openCVLoading = true;
+            // loading blocks, usually the overlay service loaded the packaged libraries already
+            scheduler.post(new Runnable() {
+                @Override
+                public void run() {
+                    final boolean loaded = OpenCvStartup.loadPackaged();
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            openCVLoading = false;
+                            if (isDestroyed() || openCVLoaded) {
+                                return;
+                            }
+                            if (loaded) {
+                                onOpenCVLoaded();
+                            } else {
+                                OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_3_1_0, PokemonAnalysisActivity.this, getOpenCVLoadedHandler());
+                            }
+                        }
+                    });
+                }
+            });
+        }
         super.onResume();
     }
 
@@ -96,15 +140,20 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
             @Override
             public void onManagerConnected(int status) {
                 if (status == LoaderCallbackInterface.SUCCESS && !openCVLoaded) {
-                    openCVLoaded = true;
-                    updateShownTrainerLevel(getTrainerLevel());
-                    triggerPokemonDataAnalysis();
+                    OpenCvStartup.setLoaded();
+                    onOpenCVLoaded();
                 }
                 super.onManagerConnected(status);
             }
         };
     }
 
+    private void onOpenCVLoaded() {
+        openCVLoaded = true;
+        updateShownTrainerLevel(getTrainerLevel());
+        triggerPokemonDataAnalysis();
+    }
+
     private void showLevelChangeDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Update your trainer level:");
@@ -125,20 +174,31 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
     }
 
     @Override
-    public void onBackPressed() {
-        super.onBackPressed();
-        finish();
-    }
-
-    private void createLooperThread() {
-        new Thread() {
+    protected void onDestroy() {
+        super.onDestroy();
+        scheduler.cancel(this);
+        scheduler.post(new Runnable() {
             @Override
             public void run() {
-                Looper.prepare();
-                handler = new Handler();
-                Looper.loop();
+                if (analyzer != null) {
+                    analyzer.release();
+                    analyzer = null;
+                }
             }
-        }.start();
+        });
+        scheduler.release();
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        // the frame store dropped the frame once it was loaded
+        return new LoadedFrame(inputBmp, fusedFrame);
+    }
+
+    @Override
+    public void onBackPressed() {
+        super.onBackPressed();
+        finish();
     }
 
     private void exportTrainerLevelPref(int trainerLevel) {
@@ -160,23 +220,48 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
         return sp.getInt(TRAINER_LEVEL_KEY, MIN_TRAINER_LVL);
     }
 
+    private boolean useJavaEngine() {
+        SharedPreferences sp = getSharedPreferences(PREFS_FILE, Activity.MODE_PRIVATE);
+        return sp.getBoolean(JAVA_ENGINE_KEY, false);
+    }
+
     private void triggerPokemonDataAnalysis() {
-        handler.post(new Runnable() {
+        // a newer trainer level replaces the analysis that is queued or running
+        scheduler.submit(this, new AnalysisScheduler.Job() {
             @Override
-            public void run() {
+            protected void execute() {
                 showLoadingBar();
-                PokemonScreenAnalyzer.Result result = new PokemonScreenAnalyzer(getTrainerLevel()).analyze(inputBmp);
+                // the analyzer keeps the processed image, a trainer level change only resamples the arc
+                if (analyzer == null) {
+                    calibration = calibrationStore.load(inputBmp.getWidth(), inputBmp.getHeight(), getResources().getDisplayMetrics().densityDpi);
+                    analyzer = new PokemonScreenAnalyzer(inputBmp, calibration, useJavaEngine());
+                    analyzer.setFusedFrame(fusedFrame);
+                    analyzer.setDetailScreenCheck(getSharedPreferences(PREFS_FILE, Activity.MODE_PRIVATE).getBoolean(DETAIL_SCREEN_CHECK_KEY, true));
+                    if (getSharedPreferences(PREFS_FILE, Activity.MODE_PRIVATE).getBoolean(POLAR_PROFILE_KEY, false)) {
+                        analyzer.setLevelMethod(ArcPipeline.LevelMethod.POLAR_PROFILE);
+                    }
+                }
+                ArcAnalysis result = analyzer.analyze(getTrainerLevel(), this);
+                calibrationStore.save(calibration);
+                if (isCancelled()) {
+                    return;
+                }
                 showAnalysisResult(result);
+                recordTapToResult();
+                if (isCancelled()) {
+                    return;
+                }
+                showDebugBitmap(analyzer.renderDebug(result, DEBUG_DOWNSCALE, Bitmap.Config.RGB_565));
+                MetricsDump.write(PokemonAnalysisActivity.this);
             }
         });
 
     }
 
-    private void showAnalysisResult(final PokemonScreenAnalyzer.Result result) {
+    private void showAnalysisResult(final ArcAnalysis result) {
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                getDebugBmpView().setImageBitmap(result.getDebugBitmap());
                 findViewById(R.id.outputSection).setVisibility(View.VISIBLE);
                 findViewById(R.id.loadingBar).setVisibility(View.GONE);
                 if (result.isValid()) {
@@ -188,6 +273,15 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
         });
     }
 
+    private void showDebugBitmap(final Bitmap debugBmp) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                getDebugBmpView().setImageBitmap(debugBmp);
+            }
+        });
+    }
+
     private void showLoadingBar() {
         runOnUiThread(new Runnable() {
             @Override
@@ -200,10 +294,24 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
 
 
     private void loadPokemonImage() {
+        LoadedFrame retained = (LoadedFrame) getLastCustomNonConfigurationInstance();
+        if (retained != null) {
+            inputBmp = retained.screen;
+            fusedFrame = retained.fused;
+            return;
+        }
+        if (getFrameId() != FrameStore.NO_FRAME) {
+            inputBmp = FrameStore.get(getFrameId());
+            fusedFrame = FrameStore.getFused(getFrameId());
+            FrameStore.remove(getFrameId());
+            return;
+        }
         final Uri imageUri = getInputImageUri();
         if (imageUri != null) {
             try {
+                long begin = PipelineMetrics.begin(PipelineMetrics.PNG_DECODE);
                 inputBmp = MediaStore.Images.Media.getBitmap(this.getContentResolver(), imageUri);
+                PipelineMetrics.end(PipelineMetrics.PNG_DECODE, begin);
             } catch (IOException e) {
                 Log.e(this.getClass().getSimpleName(), "Exception in loading image", e);
             }
@@ -220,7 +328,30 @@ public class PokemonAnalysisActivity extends AppCompatActivity {
         return imageUri;
     }
 
+    // only the first result of an overlay capture counts, later ones are trainer level changes
+    private void recordTapToResult() {
+        long tapTime = getIntent().getLongExtra(MetricsDump.EXTRA_TAP_TIME, 0);
+        if (tapTime > 0) {
+            PipelineMetrics.record(PipelineMetrics.TAP_TO_RESULT, SystemClock.elapsedRealtimeNanos() - tapTime);
+            getIntent().removeExtra(MetricsDump.EXTRA_TAP_TIME);
+        }
+    }
+
+    private long getFrameId() {
+        return getIntent().getLongExtra(FrameStore.EXTRA_FRAME_ID, FrameStore.NO_FRAME);
+    }
+
     private ImageView getDebugBmpView() {
         return (ImageView) findViewById(R.id.debugBitmap);
     }
+
+    private static class LoadedFrame {
+        final Bitmap screen;
+        final GrayFrame fused;
+
+        LoadedFrame(Bitmap screen, GrayFrame fused) {
+            this.screen = screen;
+            this.fused = fused;
+        }
+    }
 }
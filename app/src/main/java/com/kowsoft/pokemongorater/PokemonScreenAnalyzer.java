@@ -3,188 +3,240 @@ package com.kowsoft.pokemongorater;
 import android.graphics.Bitmap;
 import android.util.Log;
 
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.ArcCalibration;
+import com.kowsoft.pokemongorater.analysis.ArcPipeline;
+import com.kowsoft.pokemongorater.analysis.ArcSession;
+import com.kowsoft.pokemongorater.analysis.Cancellation;
+import com.kowsoft.pokemongorater.analysis.DetailScreenClassifier;
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+import com.kowsoft.pokemongorater.analysis.JavaArcEngine;
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
 import org.opencv.android.Utils;
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint3f;
-import org.opencv.core.Point;
-import org.opencv.core.Point3;
-import org.opencv.core.Range;
-import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.imgproc.Imgproc;
-
-import java.util.Arrays;
-
-import static java.lang.Math.max;
-import static java.lang.Math.min;
 
+import java.util.concurrent.CancellationException;
+
+/**
+ * Analyzes one screen. The image processing runs on the first {@link #analyze(int)} and is
+ * kept, so analyzing again for another trainer level only samples the level arc again.
+ * Screens that are not a Pokémon detail page are rejected from a thumbnail first, unless
+ * that check is turned off.
+ * The native buffers come from a pooled {@link ArcSession}, so consecutive screenshots reuse
+ * them. With a fused burst the arc is analyzed on it instead of the bitmap, which is still used
+ * for the detail screen check. A screen capture can also be copied straight into the screen
+ * Mat of a session, without any bitmap. Not thread-safe, {@link #release()} it when done.
+ */
 public class PokemonScreenAnalyzer {
 
-    // Thanks to http://poke.isitin.org/ for the values
-    private static final double[] CPM = {0.0940000, 0.1351374, 0.1663979, 0.1926509, 0.2157325, 0.2365727, 0.2557201, 0.2735304, 0.2902499, 0.3060574, 0.3210876, 0.3354450, 0.3492127, 0.3624578, 0.3752356, 0.3875924, 0.3995673, 0.4111936, 0.4225000, 0.4335117, 0.4431076, 0.4530600, 0.4627984, 0.4723361, 0.4816850, 0.4908558, 0.4998584, 0.5087018, 0.5173940, 0.5259425, 0.5343543, 0.5426358, 0.5507927, 0.5588306, 0.5667545, 0.5745692, 0.5822789, 0.5898879, 0.5974000, 0.6048188, 0.6121573, 0.6194041, 0.6265671, 0.6336492, 0.6406530, 0.6475810, 0.6544356, 0.6612193, 0.6679340, 0.6745819, 0.6811649, 0.6876849, 0.6941437, 0.7005429, 0.7068842, 0.7131691, 0.7193991, 0.7255756, 0.7317000, 0.7347410, 0.7377695, 0.7407856, 0.7437894, 0.7467812, 0.7497610, 0.7527291, 0.7556855, 0.7586304, 0.7615638, 0.7644861, 0.7673972, 0.7702973, 0.7731865, 0.7760650, 0.7789328, 0.7817901, 0.7846370, 0.7874736, 0.7903000, 0.7931164};
+    private final Bitmap inputBmp;
+    private final int width;
+    private final int height;
+    private final ArcCalibration calibration;
+    private final boolean withoutOpenCV;
+    private GrayFrame fused;
+    private ArcSession session;
+    private ArcPipeline pipeline;
+    private JavaArcEngine javaEngine;
+    private Boolean detailScreen;
+    private boolean detailScreenCheck = true;
+    private ArcPipeline.LevelMethod levelMethod = ArcPipeline.LevelMethod.DISTANCE_MAP;
+
+    /**
+     * With {@code withoutOpenCV} the analysis runs with {@link JavaArcEngine}, so OpenCV does
+     * not need to be loaded. The Java engine does not use the calibration.
+     */
+    public PokemonScreenAnalyzer(Bitmap bitmap, ArcCalibration calibration, boolean withoutOpenCV) {
+        this.inputBmp = bitmap;
+        this.width = bitmap.getWidth();
+        this.height = bitmap.getHeight();
+        this.calibration = calibration;
+        this.withoutOpenCV = withoutOpenCV;
+    }
 
-    private static final double MIN_DIST_PERCENT = 0.1;
+    /**
+     * Analyzes the screen in the screen Mat of {@code session} with OpenCV, see
+     * {@link ArcSession#putScreen}. {@code detailScreen} is what {@link DetailScreenClassifier}
+     * said about it. The analyzer takes over the session.
+     */
+    public PokemonScreenAnalyzer(ArcSession session, boolean detailScreen, ArcCalibration calibration) {
+        this.inputBmp = null;
+        this.width = session.getWidth();
+        this.height = session.getHeight();
+        this.session = session;
+        this.detailScreen = detailScreen;
+        this.calibration = calibration;
+        this.withoutOpenCV = false;
+    }
 
-    public static final int THRESHOLD = 25;
-    public static final double ACCUMULATOR = 1.0;
-    public static final int ACC_THRESHOLD = 100;
-    public static final int ANGLE_THRESH = 245;
+    /**
+     * Whether screens that {@link DetailScreenClassifier} rejects are reported invalid without
+     * looking for the arc, on by default. Set before the first {@link #analyze(int)}.
+     */
+    public void setDetailScreenCheck(boolean detailScreenCheck) {
+        this.detailScreenCheck = detailScreenCheck;
+    }
 
-    private final int trainerLevel;
+    /**
+     * How the OpenCV path estimates the level, set before the first {@link #analyze(int)}.
+     */
+    public void setLevelMethod(ArcPipeline.LevelMethod levelMethod) {
+        this.levelMethod = levelMethod;
+    }
 
-    public PokemonScreenAnalyzer(int trainerLevel) {
-        this.trainerLevel = trainerLevel;
+    /**
+     * Gray top half of a burst of this screen fused by {@link GrayFrame#maxRgba}, or null. Set
+     * before the first {@link #analyze(int)}.
+     */
+    public void setFusedFrame(GrayFrame fused) {
+        this.fused = fused;
     }
 
-    public static class Result {
-        private final boolean valid;
-        private final double level;
-        private final Bitmap debugBmp;
+    public ArcAnalysis analyze(int trainerLevel) {
+        return analyze(trainerLevel, Cancellation.NONE);
+    }
 
-        private Result(boolean valid, double level, Bitmap debugBmp) {
-            this.valid = valid;
-            this.level = level;
-            this.debugBmp = debugBmp;
+    /**
+     * Like {@link #analyze(int)}, but stops with a {@link CancellationException} at the next
+     * stage once {@code cancellation} says so. Completed stages are kept.
+     */
+    public ArcAnalysis analyze(int trainerLevel, Cancellation cancellation) {
+        if (detailScreenCheck && !isDetailScreen()) {
+            Log.d(this.getClass().getSimpleName(), "Not a Pokémon detail screen");
+            return ArcAnalysis.invalid();
         }
-
-        public static Result valid(double level, Bitmap debugBmp) {
-            return new Result(true, level, debugBmp);
+        if (cancellation.isCancelled()) {
+            throw new CancellationException();
         }
-
-        public static Result invalid(Bitmap debugBmp) {
-            return new Result(false, 0, debugBmp);
+        if (withoutOpenCV) {
+            return analyzeWithoutOpenCV(trainerLevel);
         }
-
-        public boolean isValid() {
-            return valid;
+        if (pipeline == null && fused != null && fused.getWidth() == width && fused.getHeight() == height) {
+            Mat grayTop = session().getGrayTop();
+            grayTop.put(0, 0, fused.getPixels());
+            pipeline = session().grayPipeline(grayTop, calibration);
+            pipeline.setLevelMethod(levelMethod);
+        } else if (pipeline == null && inputBmp == null) {
+            pipeline = session().pipeline(session().getScreen(), calibration);
+            pipeline.setLevelMethod(levelMethod);
+        } else if (pipeline == null) {
+            Mat screen = session().getScreen();
+            long begin = PipelineMetrics.begin(PipelineMetrics.BITMAP_TO_MAT);
+            Utils.bitmapToMat(inputBmp, screen);
+            PipelineMetrics.end(PipelineMetrics.BITMAP_TO_MAT, begin);
+            pipeline = session().pipeline(screen, calibration);
+            pipeline.setLevelMethod(levelMethod);
         }
 
-        public double getLevel() {
-            return level;
-        }
+        pipeline.setCancellation(cancellation);
+        ArcAnalysis analysis = pipeline.analyze(trainerLevel);
 
-        public Bitmap getDebugBitmap() {
-            return debugBmp;
-        }
+        Log.d(this.getClass().getSimpleName(), "Detected arc: " + analysis.getCenterX() + "," + analysis.getCenterY() + " r=" + analysis.getRadius()
+                + " calibrated: " + (calibration != null ? calibration.getCircle() : null));
+        return analysis;
     }
 
-    public Result analyze(Bitmap bitmap) {
-        Result result = Result.invalid(bitmap);
-        Mat orig = new Mat();
-        Mat grayMat = new Mat();
-
-        Utils.bitmapToMat(bitmap, orig);
-
-        // Let's only work on top half
-        Mat mat = new Mat(orig, new Range(0, orig.rows() / 2));
-
-        Imgproc.cvtColor(mat, grayMat, Imgproc.COLOR_BGRA2GRAY);
-        Imgproc.GaussianBlur(grayMat, grayMat, new Size(9, 9), 2, 2);
-
-        MatOfPoint3f circles = new MatOfPoint3f();
-
-        int minDist = round(orig.rows() * MIN_DIST_PERCENT);
-
-        Imgproc.HoughCircles(grayMat,
-                circles,
-                Imgproc.CV_HOUGH_GRADIENT,
-                ACCUMULATOR,
-                minDist,
-                THRESHOLD,
-                ACC_THRESHOLD,
-                0,
-                0);
-
-        Log.d(this.getClass().getSimpleName(), "Detected circles: " + circles.size());
-        Log.d(this.getClass().getSimpleName(), "Detected circles data: " + Arrays.toString(circles.toArray()));
-
-        // Level arc center must be close to image center
-
-        Point center = null;
-        int radius = 0;
-        Scalar centerRange = new Scalar((bitmap.getWidth() - minDist) / 2.0, (bitmap.getWidth() + minDist) / 2.0);
-
-        for (Point3 circle : circles.toArray()) {
-            if (circle.x > centerRange.val[0] && circle.x < centerRange.val[1]) {
-                center = new Point(circle.x, circle.y);
-                radius = (int) Math.round(circle.z);
-                break;
-            }
+    /**
+     * The analyzed screen, built from the screen Mat when there is no bitmap. Call it before
+     * {@link #release()}.
+     */
+    public Bitmap getScreen() {
+        if (inputBmp != null) {
+            return inputBmp;
         }
+        long begin = PipelineMetrics.begin(PipelineMetrics.MAT_TO_BITMAP);
+        Bitmap screen = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Utils.matToBitmap(session.getScreen(), screen);
+        PipelineMetrics.end(PipelineMetrics.MAT_TO_BITMAP, begin);
+        return screen;
+    }
 
-        if (center != null) {
-
-            Mat thresh = new Mat();
-
-            Imgproc.threshold(grayMat, thresh, ANGLE_THRESH, 255, Imgproc.THRESH_BINARY);
-
-            Mat threshDist = new Mat();
-
-            Imgproc.distanceTransform(thresh, threshDist, Imgproc.DIST_L2, Imgproc.DIST_MASK_5);
-
-            Imgproc.circle(mat, center, 3, new Scalar(0, 255, 255, 255), -1);
-            Imgproc.circle(mat, center, radius, new Scalar(0, 0, 255, 255), 2);
+    /**
+     * Renders the debug image of an analysis of this screen, shrunk by {@code downscale}.
+     * {@code config} may be ARGB_8888 or RGB_565. Without OpenCV, or when no arc was found,
+     * this is the input bitmap; null when there is none.
+     */
+    public Bitmap renderDebug(ArcAnalysis analysis, int downscale, Bitmap.Config config) {
+        if (withoutOpenCV || !analysis.isValid() || pipeline == null) {
+            return inputBmp != null ? scaled(inputBmp, downscale, config) : null;
+        }
+        pipeline.setCancellation(Cancellation.NONE);
+        Mat outMat = session.renderDebug(analysis, downscale);
 
-            int max = 0;
-            double estPokemonLevel = -1;
+        long begin = PipelineMetrics.begin(PipelineMetrics.MAT_TO_BITMAP);
+        Bitmap outBitmap = Bitmap.createBitmap(outMat.cols(), outMat.rows(), config);
+        Utils.matToBitmap(outMat, outBitmap);
+        PipelineMetrics.end(PipelineMetrics.MAT_TO_BITMAP, begin);
 
-            for (double pokemonLevel = 1; pokemonLevel <= trainerLevel + 1.5; pokemonLevel += 0.5) {
-                double angleRad = calcAngle(pokemonLevel);
-                Point start = new Point(center.x + (radius - 50) * Math.cos(angleRad), center.y - (radius - 50) * Math.sin(angleRad));
-                Point end = new Point(center.x + radius * Math.cos(angleRad), center.y - radius * Math.sin(angleRad));
-                Imgproc.line(mat, start, end, new Scalar(0, 0, 255, 255), 2);
-                int curDist = round(threshDist.get(round(end.y), round(end.x))[0]);
-                if (curDist > max) {
-                    max = curDist;
-                    estPokemonLevel = pokemonLevel;
-                }
-            }
+        return outBitmap;
+    }
 
-            if (estPokemonLevel > 0) {
-                double angleRad = calcAngle(estPokemonLevel);
-                Point end = new Point(center.x + radius * Math.cos(angleRad), center.y - radius * Math.sin(angleRad));
-                Imgproc.line(mat, center, end, new Scalar(0, 255, 255, 255), 2);
+    private boolean isDetailScreen() {
+        if (detailScreen == null) {
+            long begin = PipelineMetrics.begin(PipelineMetrics.CLASSIFY);
+            int width = DetailScreenClassifier.THUMB_WIDTH;
+            int height = DetailScreenClassifier.THUMB_HEIGHT;
+            Bitmap thumb = Bitmap.createScaledBitmap(inputBmp, width, height, false);
+            int[] argb = new int[width * height];
+            thumb.getPixels(argb, 0, width, 0, 0, width, height);
+            if (thumb != inputBmp) {
+                thumb.recycle();
             }
+            detailScreen = DetailScreenClassifier.isDetailScreen(argb, width, height, width);
+            PipelineMetrics.end(PipelineMetrics.CLASSIFY, begin);
+        }
+        return detailScreen;
+    }
 
-            Mat threshColor = new Mat();
-
-            Imgproc.cvtColor(thresh, threshColor, Imgproc.COLOR_GRAY2BGRA);
-
-            Mat outMat = new Mat();
-
-            Core.vconcat(Arrays.asList(mat, threshColor), outMat);
-
-            Bitmap outBitmap = Bitmap.createBitmap(outMat.cols(), outMat.rows(), Bitmap.Config.ARGB_8888);
-            Utils.matToBitmap(outMat, outBitmap);
-
-            thresh.release();
-            threshDist.release();
-            threshColor.release();
-            outMat.release();
-
-            result = Result.valid(estPokemonLevel, outBitmap);
+    private ArcSession session() {
+        if (session == null) {
+            session = ArcSession.obtain(width, height);
         }
-        orig.release();
-        grayMat.release();
-        mat.release();
-        circles.release();
-        return result;
+        return session;
     }
 
-    private double calcAngle(double pokemonLevel) {
-        // Thanks to http://poke.isitin.org/ for the formula
-        double angleDeg = 180 - ((getCPM(pokemonLevel) - getCPM(1)) * 202.037116 / getCPM(trainerLevel));
-        return angleDeg / 180.0 * Math.PI;
+    private static Bitmap scaled(Bitmap bitmap, int downscale, Bitmap.Config config) {
+        Bitmap out = bitmap;
+        if (downscale > 1) {
+            out = Bitmap.createScaledBitmap(bitmap, bitmap.getWidth() / downscale, bitmap.getHeight() / downscale, true);
+        }
+        if (out.getConfig() != config) {
+            Bitmap converted = out.copy(config, false);
+            if (out != bitmap) {
+                out.recycle();
+            }
+            out = converted;
+        }
+        return out;
     }
 
-    private static double getCPM(double level) {
-        int idx = min(max(round(level * 2 - 2), 0), CPM.length - 1);
-        return CPM[idx];
+    private ArcAnalysis analyzeWithoutOpenCV(int trainerLevel) {
+        ArcAnalysis analysis;
+        if (javaEngine == null && fused != null) {
+            javaEngine = new JavaArcEngine(trainerLevel);
+            analysis = javaEngine.analyzeGray(fused);
+        } else if (javaEngine == null) {
+            int width = inputBmp.getWidth();
+            int rows = inputBmp.getHeight() / 2;
+            int[] pixels = new int[width * rows];
+            inputBmp.getPixels(pixels, 0, width, 0, 0, width, rows);
+            javaEngine = new JavaArcEngine(trainerLevel);
+            analysis = javaEngine.analyzeArgb(pixels, 0, width, inputBmp.getHeight(), width);
+        } else {
+            analysis = javaEngine.resample(trainerLevel);
+        }
+        Log.d(this.getClass().getSimpleName(), "Detected arc (Java engine): " + analysis.getCenterX() + "," + analysis.getCenterY() + " r=" + analysis.getRadius());
+        return analysis;
     }
 
-    private static int round(double v) {
-        return (int) Math.round(v);
+    public void release() {
+        pipeline = null;
+        if (session != null) {
+            session.recycle();
+            session = null;
+        }
+        javaEngine = null;
     }
 
-}
\ No newline at end of file
+}
@@ -6,27 +6,38 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.graphics.Bitmap;
-import android.graphics.PixelFormat;
 import android.graphics.Point;
-import android.hardware.display.VirtualDisplay;
 import android.media.Image;
-import android.media.ImageReader;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
 import android.os.Binder;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.WindowManager;
 import android.widget.Toast;
 
+import com.kowsoft.pokemongorater.analysis.ArcSession;
+import com.kowsoft.pokemongorater.analysis.DetailScreenClassifier;
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
 import java.nio.ByteBuffer;
 
 public class ScreenCaptureService extends Service {
+    public static final int DEFAULT_BURST_FRAMES = 4;
+    // the frame being handed out and the one the display renders next
+    private static final int MAX_IMAGES = 2;
+    // a few frames at 60 fps, a static screen renders no new frames at all
+    private static final long BURST_DEADLINE_MS = 250;
+
     private MediaProjection mediaProjection;
+    private HandlerThread thread;
     private Handler handler;
+    private ScreenCaptureSession session;
 
     public class LocalBinder extends Binder {
         public ScreenCaptureService getService() {
@@ -38,6 +49,23 @@ public class ScreenCaptureService extends Service {
         void onScreenReady(Bitmap screen);
     }
 
+    public interface CaptureBurstCallback {
+        /**
+         * Receives the first frame of the burst, and the gray top halves of all {@code frames}
+         * captured fused into one. Both belong to the callee.
+         */
+        void onBurstReady(Bitmap screen, GrayFrame fused, int frames);
+    }
+
+    public interface CaptureMatCallback {
+        /**
+         * Like {@link CaptureBurstCallback#onBurstReady}, with the first frame of the burst in
+         * the screen Mat of {@code session} instead of a bitmap, and whether
+         * {@link DetailScreenClassifier} takes it for a detail screen. Recycle the session when done.
+         */
+        void onBurstReady(ArcSession session, boolean detailScreen, GrayFrame fused, int frames);
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return new LocalBinder();
@@ -46,23 +74,64 @@ public class ScreenCaptureService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
+        MetricsDump.install();
         acquireScreenshotPermission();
-        createLooperThread();
+        thread = new HandlerThread(getClass().getSimpleName());
+        thread.start();
+        handler = new Handler(thread.getLooper());
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        closeSession();
         if (mediaProjection != null) {
             mediaProjection.stop();
         }
+        thread.quitSafely();
     }
 
     public void setMediaProjection(MediaProjection mediaProjection) {
+        closeSession();
         this.mediaProjection = mediaProjection;
     }
 
     public void captureScreen(final CaptureScreenCallback callback) {
+        capture(new ScreenCaptureSession.FrameListener() {
+            @Override
+            public void onFrame(Image image) {
+                callback.onScreenReady(acquireScreen(image));
+            }
+        });
+    }
+
+    /**
+     * Captures up to {@code frames} consecutive frames from the running session and fuses their
+     * gray top halves with {@link GrayFrame#maxRgba} as they arrive, so an arc partly covered
+     * in one frame is completed by the others. The burst ends {@link #BURST_DEADLINE_MS} after its
+     * first frame with the frames that arrived until then, e.g. when nothing on screen moves.
+     */
+    public void captureBurst(int frames, CaptureBurstCallback callback) {
+        capture(new Burst(frames, callback, null));
+    }
+
+    /**
+     * Like {@link #captureBurst}, but copies the first frame straight from the image into the
+     * screen Mat of a pooled {@link ArcSession}, so no bitmap is built. OpenCV must be loaded.
+     */
+    public void captureBurstMat(int frames, CaptureMatCallback callback) {
+        capture(new Burst(frames, null, callback));
+    }
+
+    /**
+     * Hands the next screen image to {@code frameListener} on the capture thread, e.g. to copy
+     * out just the pixels it needs, like {@link LiveRater} does with a {@link GrayFrame}.
+     */
+    public void captureImage(ScreenCaptureSession.FrameListener frameListener) {
+        capture(frameListener);
+    }
+
+    private void capture(ScreenCaptureSession.FrameListener frameListener) {
 
         if (mediaProjection == null) {
             Toast.makeText(this, "Cannot capture: Media Projection service not available.", Toast.LENGTH_SHORT).show();
@@ -74,67 +143,128 @@ public class ScreenCaptureService extends Service {
         getWindowManager().getDefaultDisplay().getSize(size);
         Log.d(this.getClass().getSimpleName(), "Preparing for screenshot acquisition. Size: " + size);
 
-        // start capture reader
-        ImageReader imageReader = ImageReader.newInstance(size.x, size.y, PixelFormat.RGBA_8888, 1);
-        Log.d(this.getClass().getSimpleName(), "ImageReader Created. W: " + imageReader.getWidth() + " H: " + imageReader.getHeight());
-
-        final VirtualDisplay virtualDisplay = mediaProjection.createVirtualDisplay("CaptureScreenServiceVirtualDisplay_" + System.currentTimeMillis(),
-                size.x,
-                size.y,
-                getResources().getDisplayMetrics().densityDpi,
-                0,
-                imageReader.getSurface(),
-                null,
-                handler);
+        // the session is kept between captures and only recreated when the screen size changes
+        if (session == null || !session.isFor(size.x, size.y)) {
+            closeSession();
+            long begin = PipelineMetrics.begin(PipelineMetrics.DISPLAY_CREATE);
+            session = new ScreenCaptureSession(mediaProjection, size.x, size.y, getResources().getDisplayMetrics().densityDpi, MAX_IMAGES, handler);
+            PipelineMetrics.end(PipelineMetrics.DISPLAY_CREATE, begin);
+        }
+        session.requestFrame(frameListener);
+    }
 
-        Point tmp = new Point();
-        virtualDisplay.getDisplay().getSize(tmp);
-        Log.d(this.getClass().getSimpleName(), "VirtualDisplay Created. Size: " +  tmp);
+    // only touched on the handler thread once the first frame arrived
+    private class Burst implements ScreenCaptureSession.FrameListener, Runnable {
+        private final int frames;
+        private final CaptureBurstCallback callback;
+        private final CaptureMatCallback matCallback;
+        private final GrayFrame fused = new GrayFrame();
+        private final long start = SystemClock.elapsedRealtimeNanos();
+        private Bitmap screen;
+        private ArcSession screenMat;
+        private boolean detailScreen;
+        private int captured = 0;
+        private boolean done = false;
+
+        Burst(int frames, CaptureBurstCallback callback, CaptureMatCallback matCallback) {
+            this.frames = frames;
+            this.callback = callback;
+            this.matCallback = matCallback;
+        }
 
-        imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
-            @Override
-            public void onImageAvailable(ImageReader reader) {
-                try {
-                    callback.onScreenReady(acquireScreen(reader));
-                } finally {
-                    virtualDisplay.release();
-                    reader.close();
-                }
+        @Override
+        public void onFrame(Image image) {
+            if (done) {
+                return;
             }
-        }, handler);
-    }
-
-    private static Bitmap acquireScreen(ImageReader reader) {
-        try (Image image = reader.acquireNextImage()) {
-            Log.d(ScreenCaptureService.class.getSimpleName(), "Image Acquired. W: " + image.getWidth() + " H: " + image.getHeight());
-            Image.Plane[] planes = image.getPlanes();
-            ByteBuffer buffer = planes[0].getBuffer();
-            int pixelStride = planes[0].getPixelStride();
-            int rowStride = planes[0].getRowStride();
-            int rowPadding = rowStride - pixelStride * reader.getWidth();
+            Image.Plane plane = image.getPlanes()[0];
+            if (captured == 0 && matCallback != null) {
+                screenMat = acquireScreenMat(image);
+                long begin = PipelineMetrics.begin(PipelineMetrics.CLASSIFY);
+                detailScreen = DetailScreenClassifier.isDetailScreen(plane.getBuffer(), image.getWidth(), image.getHeight(), plane.getRowStride(), plane.getPixelStride());
+                PipelineMetrics.end(PipelineMetrics.CLASSIFY, begin);
+            } else if (captured == 0) {
+                screen = acquireScreen(image);
+            }
+            long begin = PipelineMetrics.begin(PipelineMetrics.FRAME_COPY);
+            if (captured == 0) {
+                fused.copyRgba(plane.getBuffer(), image.getWidth(), image.getHeight(), plane.getRowStride(), plane.getPixelStride());
+            } else {
+                fused.maxRgba(plane.getBuffer(), image.getWidth(), image.getHeight(), plane.getRowStride(), plane.getPixelStride());
+            }
+            PipelineMetrics.end(PipelineMetrics.FRAME_COPY, begin);
+            captured++;
+            if (captured == 1) {
+                handler.postDelayed(this, BURST_DEADLINE_MS);
+            }
+            if (captured >= frames) {
+                finish();
+            } else {
+                capture(this);
+            }
+        }
 
-            Log.d(ScreenCaptureService.class.getSimpleName(), "Debug Info. pixelStride: " + pixelStride + " rowStride: " + rowStride + " rowPadding: " + rowPadding);
+        // deadline of the whole burst
+        @Override
+        public void run() {
+            finish();
+        }
 
-            // build bitmap
-            Bitmap bitmap = Bitmap.createBitmap(reader.getWidth() + rowPadding / pixelStride, reader.getHeight(), Bitmap.Config.ARGB_8888);
-            bitmap.copyPixelsFromBuffer(buffer);
-            Log.d(ScreenCaptureService.class.getSimpleName(), "Bitmap Created. W: " + bitmap.getWidth() + " H: " + bitmap.getHeight());
+        private void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            handler.removeCallbacks(this);
+            // the next frame must not wait for a burst that is over
+            if (session != null) {
+                session.cancelFrame(this);
+            }
+            PipelineMetrics.record(PipelineMetrics.BURST_CAPTURE, SystemClock.elapsedRealtimeNanos() - start);
+            Log.d(ScreenCaptureService.class.getSimpleName(), "Burst captured. Frames: " + captured + " of " + frames);
+            if (matCallback != null) {
+                matCallback.onBurstReady(screenMat, detailScreen, fused, captured);
+            } else {
+                callback.onBurstReady(screen, fused, captured);
+            }
+        }
+    }
 
-            bitmap = Bitmap.createBitmap(bitmap, 0, 0, reader.getWidth(), reader.getHeight());
-            Log.d(ScreenCaptureService.class.getSimpleName(), "Bitmap Cropped. W: " + bitmap.getWidth() + " H: " + bitmap.getHeight());
-            return bitmap;
+    private void closeSession() {
+        if (session != null) {
+            session.close();
+            session = null;
         }
     }
 
-    private void createLooperThread() {
-        new Thread() {
-            @Override
-            public void run() {
-                Looper.prepare();
-                handler = new Handler();
-                Looper.loop();
-            }
-        }.start();
+    private static Bitmap acquireScreen(Image image) {
+        Image.Plane[] planes = image.getPlanes();
+        ByteBuffer buffer = planes[0].getBuffer();
+        int pixelStride = planes[0].getPixelStride();
+        int rowStride = planes[0].getRowStride();
+        int rowPadding = rowStride - pixelStride * image.getWidth();
+
+        Log.d(ScreenCaptureService.class.getSimpleName(), "Debug Info. pixelStride: " + pixelStride + " rowStride: " + rowStride + " rowPadding: " + rowPadding);
+
+        long begin = PipelineMetrics.begin(PipelineMetrics.BITMAP_BUILD);
+        // build bitmap
+        Bitmap bitmap = Bitmap.createBitmap(image.getWidth() + rowPadding / pixelStride, image.getHeight(), Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(buffer);
+        Log.d(ScreenCaptureService.class.getSimpleName(), "Bitmap Created. W: " + bitmap.getWidth() + " H: " + bitmap.getHeight());
+
+        bitmap = Bitmap.createBitmap(bitmap, 0, 0, image.getWidth(), image.getHeight());
+        Log.d(ScreenCaptureService.class.getSimpleName(), "Bitmap Cropped. W: " + bitmap.getWidth() + " H: " + bitmap.getHeight());
+        PipelineMetrics.end(PipelineMetrics.BITMAP_BUILD, begin);
+        return bitmap;
+    }
+
+    private static ArcSession acquireScreenMat(Image image) {
+        Image.Plane plane = image.getPlanes()[0];
+        ArcSession session = ArcSession.obtain(image.getWidth(), image.getHeight());
+        long begin = PipelineMetrics.begin(PipelineMetrics.IMAGE_TO_MAT);
+        session.putScreen(plane.getBuffer(), plane.getRowStride());
+        PipelineMetrics.end(PipelineMetrics.IMAGE_TO_MAT, begin);
+        return session;
     }
 
     private void acquireScreenshotPermission() {
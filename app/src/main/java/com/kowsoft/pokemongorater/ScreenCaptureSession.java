@@ -0,0 +1,147 @@
+package com.kowsoft.pokemongorater;
+
+import android.graphics.PixelFormat;
+import android.graphics.Point;
+import android.hardware.display.VirtualDisplay;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.projection.MediaProjection;
+import android.os.Handler;
+import android.util.Log;
+
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Long lived VirtualDisplay and ImageReader pair. Between requests the display surface is
+ * detached, so nothing is rendered; a request attaches it and the next frame is handed to all
+ * pending listeners. All callbacks run on the given handler.
+ */
+public class ScreenCaptureSession {
+
+    public interface FrameListener {
+        /**
+         * The image is closed when this method returns. Its plane buffers start at position 0
+         * for every listener, whatever the listeners before read.
+         */
+        void onFrame(Image image);
+    }
+
+    private final Handler handler;
+    private final ImageReader imageReader;
+    private final VirtualDisplay virtualDisplay;
+    private final List<FrameListener> pendingListeners = new ArrayList<>();
+    private boolean closed = false;
+
+    public ScreenCaptureSession(MediaProjection mediaProjection, int width, int height, int densityDpi, int maxImages, Handler handler) {
+        this.handler = handler;
+
+        imageReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, maxImages);
+        Log.d(this.getClass().getSimpleName(), "ImageReader Created. W: " + imageReader.getWidth() + " H: " + imageReader.getHeight() + " maxImages: " + maxImages);
+
+        virtualDisplay = mediaProjection.createVirtualDisplay("CaptureScreenServiceVirtualDisplay_" + System.currentTimeMillis(),
+                width,
+                height,
+                densityDpi,
+                0,
+                null,
+                null,
+                handler);
+
+        Point tmp = new Point();
+        virtualDisplay.getDisplay().getSize(tmp);
+        Log.d(this.getClass().getSimpleName(), "VirtualDisplay Created. Size: " + tmp);
+
+        imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                deliverFrame();
+            }
+        }, handler);
+    }
+
+    public boolean isFor(int width, int height) {
+        return imageReader.getWidth() == width && imageReader.getHeight() == height;
+    }
+
+    /**
+     * Delivers the next frame to {@code listener} on the session handler.
+     */
+    public void requestFrame(final FrameListener listener) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    return;
+                }
+                pendingListeners.add(listener);
+                if (pendingListeners.size() == 1) {
+                    virtualDisplay.setSurface(imageReader.getSurface());
+                }
+            }
+        });
+    }
+
+    /**
+     * Withdraws a {@link #requestFrame} that was not delivered yet. The surface is detached when
+     * no other listener waits.
+     */
+    public void cancelFrame(final FrameListener listener) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (closed || !pendingListeners.remove(listener)) {
+                    return;
+                }
+                if (pendingListeners.isEmpty()) {
+                    virtualDisplay.setSurface(null);
+                }
+            }
+        });
+    }
+
+    public void close() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                closed = true;
+                pendingListeners.clear();
+                virtualDisplay.release();
+                imageReader.close();
+            }
+        });
+    }
+
+    private void deliverFrame() {
+        // older frames still queued in the reader are dropped
+        try (Image image = acquireLatestImage()) {
+            if (image == null || pendingListeners.isEmpty()) {
+                return;
+            }
+            Log.d(this.getClass().getSimpleName(), "Image Acquired. W: " + image.getWidth() + " H: " + image.getHeight());
+            virtualDisplay.setSurface(null);
+            List<FrameListener> listeners = new ArrayList<>(pendingListeners);
+            pendingListeners.clear();
+            deliver(image, listeners);
+        }
+    }
+
+    private Image acquireLatestImage() {
+        long begin = PipelineMetrics.begin(PipelineMetrics.FRAME_ACQUIRE);
+        Image image = imageReader.acquireLatestImage();
+        PipelineMetrics.end(PipelineMetrics.FRAME_ACQUIRE, begin);
+        return image;
+    }
+
+    // the planes hand out the same buffers to everyone, consuming them moves their position
+    static void deliver(Image image, List<FrameListener> listeners) {
+        for (FrameListener listener : listeners) {
+            for (Image.Plane plane : image.getPlanes()) {
+                plane.getBuffer().rewind();
+            }
+            listener.onFrame(image);
+        }
+    }
+}
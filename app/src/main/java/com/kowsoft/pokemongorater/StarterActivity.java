@@ -2,8 +2,10 @@ package com.kowsoft.pokemongorater;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.EditText;
 
 public class StarterActivity extends Activity implements View.OnClickListener {
@@ -13,12 +15,42 @@ public class StarterActivity extends Activity implements View.OnClickListener {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_starter);
         findViewById(R.id.startButton).setOnClickListener(this);
+        getJavaEngineCheckBox().setChecked(getRaterPreferences().getBoolean(PokemonAnalysisActivity.JAVA_ENGINE_KEY, false));
+        getPolarProfileCheckBox().setChecked(getRaterPreferences().getBoolean(PokemonAnalysisActivity.POLAR_PROFILE_KEY, false));
+        getDebugScreenCheckBox().setChecked(getRaterPreferences().getBoolean(PokemonAnalysisActivity.DEBUG_SCREEN_KEY, false));
+        getDetailScreenCheckBox().setChecked(getRaterPreferences().getBoolean(PokemonAnalysisActivity.DETAIL_SCREEN_CHECK_KEY, true));
     }
 
     @Override
     public void onClick(View v) {
+        getRaterPreferences().edit()
+                .putBoolean(PokemonAnalysisActivity.JAVA_ENGINE_KEY, getJavaEngineCheckBox().isChecked())
+                .putBoolean(PokemonAnalysisActivity.POLAR_PROFILE_KEY, getPolarProfileCheckBox().isChecked())
+                .putBoolean(PokemonAnalysisActivity.DEBUG_SCREEN_KEY, getDebugScreenCheckBox().isChecked())
+                .putBoolean(PokemonAnalysisActivity.DETAIL_SCREEN_CHECK_KEY, getDetailScreenCheckBox().isChecked())
+                .commit();
         startService(new Intent(this, OverlayService.class));
         finish();
     }
 
+    private SharedPreferences getRaterPreferences() {
+        return getSharedPreferences(PokemonAnalysisActivity.PREFS_FILE, MODE_PRIVATE);
+    }
+
+    private CheckBox getJavaEngineCheckBox() {
+        return (CheckBox) findViewById(R.id.javaEngine);
+    }
+
+    private CheckBox getPolarProfileCheckBox() {
+        return (CheckBox) findViewById(R.id.polarProfile);
+    }
+
+    private CheckBox getDebugScreenCheckBox() {
+        return (CheckBox) findViewById(R.id.debugScreen);
+    }
+
+    private CheckBox getDetailScreenCheckBox() {
+        return (CheckBox) findViewById(R.id.detailScreenCheck);
+    }
+
 }
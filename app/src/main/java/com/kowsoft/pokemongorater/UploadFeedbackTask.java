@@ -3,10 +3,14 @@ package com.kowsoft.pokemongorater;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.util.Log;
 
+import com.kowsoft.pokemongorater.analysis.PipelineMetrics;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
@@ -48,12 +52,14 @@ public class UploadFeedbackTask extends AsyncTask<UploadFeedbackTask.FeedbackDat
         private int trainerLevel;
         private String outputText;
         private Uri inputImageUri;
+        private Bitmap inputImage;
 
         public static class Builder {
 
             private int trainerLevel;
             private String outputText;
             private Uri inputImageUri;
+            private Bitmap inputImage;
 
             public Builder trainerLevel(int trainerLevel) {
                 this.trainerLevel = trainerLevel;
@@ -70,6 +76,15 @@ public class UploadFeedbackTask extends AsyncTask<UploadFeedbackTask.FeedbackDat
                 return this;
             }
 
+            /**
+             * In memory screen, used when there is no input image uri. It is PNG encoded in
+             * background only when the upload runs.
+             */
+            public Builder inputImage(Bitmap inputImage) {
+                this.inputImage = inputImage;
+                return this;
+            }
+
             public FeedbackData build() {
                 return new FeedbackData(this);
             }
@@ -79,6 +94,7 @@ public class UploadFeedbackTask extends AsyncTask<UploadFeedbackTask.FeedbackDat
             trainerLevel = builder.trainerLevel;
             outputText = builder.outputText;
             inputImageUri = builder.inputImageUri;
+            inputImage = builder.inputImage;
         }
 
         public int getTrainerLevel() {
@@ -92,6 +108,10 @@ public class UploadFeedbackTask extends AsyncTask<UploadFeedbackTask.FeedbackDat
         public Uri getInputImageUri() {
             return inputImageUri;
         }
+
+        public Bitmap getInputImage() {
+            return inputImage;
+        }
     }
 
     @Override
@@ -113,8 +133,7 @@ public class UploadFeedbackTask extends AsyncTask<UploadFeedbackTask.FeedbackDat
                     .setType(MultipartBody.FORM)
                     .addFormDataPart(TRAINER_LEVEL, Integer.toString(feedbackData.getTrainerLevel()))
                     .addFormDataPart(OUTPUT_TEXT, feedbackData.getOutputText())
-                    .addFormDataPart(INPUT_IMAGE, "pokemonScreen.png",
-                            RequestBody.create(MEDIA_TYPE_PNG, new File(feedbackData.getInputImageUri().getPath())))
+                    .addFormDataPart(INPUT_IMAGE, "pokemonScreen.png", createImageBody(feedbackData))
                     .build();
             Request request = new Request.Builder()
                     .url(FEEDBACK_SERVER_URL)
@@ -129,6 +148,17 @@ public class UploadFeedbackTask extends AsyncTask<UploadFeedbackTask.FeedbackDat
         }
     }
 
+    private static RequestBody createImageBody(FeedbackData feedbackData) {
+        if (feedbackData.getInputImageUri() != null) {
+            return RequestBody.create(MEDIA_TYPE_PNG, new File(feedbackData.getInputImageUri().getPath()));
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        long begin = PipelineMetrics.begin(PipelineMetrics.PNG_ENCODE);
+        feedbackData.getInputImage().compress(Bitmap.CompressFormat.PNG, 100, png);
+        PipelineMetrics.end(PipelineMetrics.PNG_ENCODE, begin);
+        return RequestBody.create(MEDIA_TYPE_PNG, png.toByteArray());
+    }
+
     @Override
     protected void onPostExecute(Boolean result) {
         progressDialog.dismiss();
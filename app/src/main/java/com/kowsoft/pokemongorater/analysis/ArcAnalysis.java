@@ -0,0 +1,72 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Outcome of a level arc analysis: the estimated level, the detected arc circle and the
+ * distance sampled at each level endpoint, enough to render a debug image later.
+ */
+public class ArcAnalysis {
+    private final boolean valid;
+    private final double level;
+    private final double centerX;
+    private final double centerY;
+    private final int radius;
+    private final int trainerLevel;
+    private final int[] distances;
+
+    protected ArcAnalysis(boolean valid, double level, double centerX, double centerY, int radius, int trainerLevel, int[] distances) {
+        this.valid = valid;
+        this.level = level;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+        this.trainerLevel = trainerLevel;
+        this.distances = distances;
+    }
+
+    /**
+     * {@code distances} holds one value per level, see {@link LevelArc#level(int)}.
+     */
+    public static ArcAnalysis valid(int trainerLevel, double centerX, double centerY, int radius, int[] distances) {
+        return new ArcAnalysis(true, LevelArc.pickLevel(distances), centerX, centerY, radius, trainerLevel, distances);
+    }
+
+    /**
+     * Like {@link #valid(int, double, double, int, int[])}, for estimators that pick the level
+     * some other way than the largest distance.
+     */
+    public static ArcAnalysis valid(int trainerLevel, double level, double centerX, double centerY, int radius, int[] distances) {
+        return new ArcAnalysis(true, level, centerX, centerY, radius, trainerLevel, distances);
+    }
+
+    public static ArcAnalysis invalid() {
+        return new ArcAnalysis(false, 0, 0, 0, 0, 0, new int[0]);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getTrainerLevel() {
+        return trainerLevel;
+    }
+
+    public int[] getDistances() {
+        return distances.clone();
+    }
+}
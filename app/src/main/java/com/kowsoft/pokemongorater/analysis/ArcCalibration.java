@@ -0,0 +1,93 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Level arc geometry learned for one display configuration. The arc sits at a fixed position
+ * for a given resolution and density, so once the same circle has been detected
+ * {@link #REQUIRED_DETECTIONS} times in a row it is used instead of running circle detection.
+ * A different circle detected as many times replaces it.
+ */
+public class ArcCalibration {
+
+    public static final int REQUIRED_DETECTIONS = 3;
+    private static final double TOLERANCE_PERCENT = 0.01;
+
+    private final int width;
+    private final int height;
+    private final int densityDpi;
+
+    private ArcCircle circle;
+    private ArcCircle candidate;
+    private int candidateDetections;
+
+    public ArcCalibration(int width, int height, int densityDpi) {
+        this(width, height, densityDpi, null, null, 0);
+    }
+
+    public ArcCalibration(int width, int height, int densityDpi, ArcCircle circle, ArcCircle candidate, int candidateDetections) {
+        this.width = width;
+        this.height = height;
+        this.densityDpi = densityDpi;
+        this.circle = circle;
+        this.candidate = candidate;
+        this.candidateDetections = candidate != null ? candidateDetections : 0;
+    }
+
+    public boolean isFor(int width, int height, int densityDpi) {
+        return this.width == width && this.height == height && this.densityDpi == densityDpi;
+    }
+
+    /**
+     * Calibrated arc circle, or null while still learning.
+     */
+    public synchronized ArcCircle getCircle() {
+        return circle;
+    }
+
+    /**
+     * Records a confirmed circle detection.
+     */
+    public synchronized void record(ArcCircle detected) {
+        double tolerance = Math.max(2, width * TOLERANCE_PERCENT);
+        if (circle != null && circle.isCloseTo(detected, tolerance)) {
+            candidate = null;
+            candidateDetections = 0;
+            return;
+        }
+        if (candidate == null || !candidate.isCloseTo(detected, tolerance)) {
+            candidate = detected;
+            candidateDetections = 1;
+        } else {
+            // running mean of the consistent detections
+            double n = candidateDetections;
+            candidate = new ArcCircle((candidate.getX() * n + detected.getX()) / (n + 1),
+                    (candidate.getY() * n + detected.getY()) / (n + 1),
+                    (candidate.getRadius() * n + detected.getRadius()) / (n + 1));
+            candidateDetections++;
+        }
+        if (candidateDetections >= REQUIRED_DETECTIONS) {
+            circle = candidate;
+            candidate = null;
+            candidateDetections = 0;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getDensityDpi() {
+        return densityDpi;
+    }
+
+    public synchronized ArcCircle getCandidate() {
+        return candidate;
+    }
+
+    public synchronized int getCandidateDetections() {
+        return candidateDetections;
+    }
+}
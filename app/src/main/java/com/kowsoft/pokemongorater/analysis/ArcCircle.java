@@ -0,0 +1,39 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Center and radius of the level arc, in screen pixels.
+ */
+public class ArcCircle {
+    private final double x;
+    private final double y;
+    private final double radius;
+
+    public ArcCircle(double x, double y, double radius) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public boolean isCloseTo(ArcCircle other, double tolerance) {
+        return Math.abs(x - other.x) <= tolerance
+                && Math.abs(y - other.y) <= tolerance
+                && Math.abs(radius - other.radius) <= tolerance;
+    }
+
+    @Override
+    public String toString() {
+        return "ArcCircle{x=" + x + ", y=" + y + ", radius=" + radius + '}';
+    }
+}
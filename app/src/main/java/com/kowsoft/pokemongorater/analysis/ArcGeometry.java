@@ -0,0 +1,80 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Arc endpoint of every half level for one trainer level and arc circle, rounded to the pixel
+ * the analyzers sample. Immutable, so the table built for the last circle is shared by every
+ * analysis that finds the same circle again, and scoring a screen only reads primitive arrays.
+ */
+public final class ArcGeometry {
+
+    private static ArcGeometry last;
+
+    private final int trainerLevel;
+    private final double centerX;
+    private final double centerY;
+    private final int radius;
+    private final int[] xs;
+    private final int[] ys;
+
+    private ArcGeometry(int trainerLevel, double centerX, double centerY, int radius) {
+        this.trainerLevel = trainerLevel;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+        double[] angles = LevelArc.angles(trainerLevel);
+        xs = new int[angles.length];
+        ys = new int[angles.length];
+        for (int i = 0; i < angles.length; i++) {
+            xs[i] = (int) Math.round(centerX + radius * Math.cos(angles[i]));
+            ys[i] = (int) Math.round(centerY - radius * Math.sin(angles[i]));
+        }
+    }
+
+    public static synchronized ArcGeometry of(int trainerLevel, double centerX, double centerY, int radius) {
+        if (last == null || !last.isFor(trainerLevel, centerX, centerY, radius)) {
+            last = new ArcGeometry(trainerLevel, centerX, centerY, radius);
+        }
+        return last;
+    }
+
+    public boolean isFor(int trainerLevel, double centerX, double centerY, int radius) {
+        return this.trainerLevel == trainerLevel && this.centerX == centerX && this.centerY == centerY && this.radius == radius;
+    }
+
+    public int getTrainerLevel() {
+        return trainerLevel;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int levelCount() {
+        return xs.length;
+    }
+
+    public int x(int index) {
+        return xs[index];
+    }
+
+    public int y(int index) {
+        return ys[index];
+    }
+
+    // shared, for bulk sampling; must not be modified
+    int[] xs() {
+        return xs;
+    }
+
+    int[] ys() {
+        return ys;
+    }
+}
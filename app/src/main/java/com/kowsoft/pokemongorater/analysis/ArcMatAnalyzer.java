@@ -0,0 +1,316 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint3f;
+import org.opencv.core.Point;
+import org.opencv.core.Point3;
+import org.opencv.core.Range;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+
+/**
+ * OpenCV level arc analysis on an RGBA screen Mat. Every stage is exposed on its own so it
+ * can be measured separately; {@link ArcPipeline} chains them.
+ * With an {@link ArcCalibration} the calibrated circle is verified with {@link #fitsArc} and
+ * HoughCircles only runs when it does not fit.
+ */
+public class ArcMatAnalyzer {
+
+    private static final double MIN_DIST_PERCENT = 0.1;
+    private static final double MIN_RADIUS_PERCENT = 0.125;
+    private static final double MAX_RADIUS_PERCENT = 0.5;
+
+    public static final int THRESHOLD = 25;
+    public static final double ACCUMULATOR = 1.0;
+    public static final int ACC_THRESHOLD = 100;
+    public static final int ANGLE_THRESH = 245;
+    public static final int COARSE_SCALE = 4;
+    // radius tolerance of the full resolution refinement, a few coarse pixels
+    private static final int REFINE_MARGIN = 2 * COARSE_SCALE;
+
+    private static final int FIT_SAMPLES = 48;
+    private static final int FIT_CONTRAST = 20;
+    private static final double FIT_RATIO = 0.6;
+
+    private final int trainerLevel;
+    private final ArcCalibration calibration;
+
+    public ArcMatAnalyzer(int trainerLevel) {
+        this(trainerLevel, null);
+    }
+
+    public ArcMatAnalyzer(int trainerLevel, ArcCalibration calibration) {
+        this.trainerLevel = trainerLevel;
+        this.calibration = calibration;
+    }
+
+    /**
+     * One shot analysis of the screen. Use an {@link ArcPipeline} to analyze the same screen
+     * more than once.
+     */
+    public ArcAnalysis analyze(Mat screen) {
+        ArcSession session = ArcSession.obtain(screen.cols(), screen.rows());
+        try {
+            return session.pipeline(screen, calibration).analyze(trainerLevel);
+        } finally {
+            session.recycle();
+        }
+    }
+
+    // Let's only work on top half
+    public static Mat topHalf(Mat screen) {
+        return new Mat(screen, new Range(0, screen.rows() / 2));
+    }
+
+    public static void toGray(Mat rgba, Mat gray) {
+        Imgproc.cvtColor(rgba, gray, Imgproc.COLOR_BGRA2GRAY);
+    }
+
+    public static void blur(Mat gray) {
+        blur(gray, gray);
+    }
+
+    public static void blur(Mat gray, Mat blurred) {
+        Imgproc.GaussianBlur(gray, blurred, new Size(9, 9), 2, 2);
+    }
+
+    /**
+     * Runs HoughCircles and returns the first circle whose center is close to the horizontal
+     * middle of the screen, or null.
+     */
+    public static Point3 findArcCircle(Mat gray, int screenWidth, int screenHeight) {
+        try (MatOfPoint3f circles = new MatOfPoint3f()) {
+            return findArcCircle(gray, screenWidth, screenHeight, circles);
+        }
+    }
+
+    private static Point3 findArcCircle(Mat gray, int screenWidth, int screenHeight, MatOfPoint3f circles) {
+        return houghNearCenter(gray, circles, screenWidth / 2.0, round(screenHeight * MIN_DIST_PERCENT), ACC_THRESHOLD, 0, 0);
+    }
+
+    /**
+     * Coarse to fine {@link #findArcCircle(Mat, int, int)}: HoughCircles on the image shrunk by
+     * {@link #COARSE_SCALE} with radius bounds from the screen width, then at full resolution
+     * only on the bounding box of the arc and within {@link #REFINE_MARGIN} of the coarse
+     * radius. Falls back to the full search when either step finds nothing.
+     */
+    public static Point3 findArcCirclePyramid(Mat gray, int screenWidth, int screenHeight) {
+        try (Mat small = new Mat(); MatOfPoint3f circles = new MatOfPoint3f()) {
+            return findArcCirclePyramid(gray, screenWidth, screenHeight, small, circles);
+        }
+    }
+
+    private static Point3 findArcCirclePyramid(Mat gray, int screenWidth, int screenHeight, Mat small, MatOfPoint3f circles) {
+        Imgproc.resize(gray, small, new Size(gray.cols() / COARSE_SCALE, gray.rows() / COARSE_SCALE), 0, 0, Imgproc.INTER_AREA);
+        Point3 coarse = houghNearCenter(small, circles,
+                screenWidth / 2.0 / COARSE_SCALE,
+                round(screenHeight * MIN_DIST_PERCENT / COARSE_SCALE),
+                ACC_THRESHOLD / COARSE_SCALE,
+                round(screenWidth * MIN_RADIUS_PERCENT / COARSE_SCALE),
+                round(screenWidth * MAX_RADIUS_PERCENT / COARSE_SCALE));
+
+        Point3 circle = null;
+        if (coarse != null) {
+            circle = refineArcCircle(gray, circles, new Point3(coarse.x * COARSE_SCALE, coarse.y * COARSE_SCALE, coarse.z * COARSE_SCALE), screenWidth, screenHeight);
+        }
+        return circle != null ? circle : findArcCircle(gray, screenWidth, screenHeight, circles);
+    }
+
+    private static Point3 refineArcCircle(Mat gray, MatOfPoint3f circles, Point3 coarse, int screenWidth, int screenHeight) {
+        // the arc is the upper half of the circle, the box keeps its center inside
+        int left = Math.max(0, (int) (coarse.x - coarse.z) - REFINE_MARGIN);
+        int right = Math.min(gray.cols(), (int) (coarse.x + coarse.z) + REFINE_MARGIN);
+        int top = Math.max(0, (int) (coarse.y - coarse.z) - REFINE_MARGIN);
+        int bottom = Math.min(gray.rows(), (int) coarse.y + REFINE_MARGIN);
+        if (right <= left || bottom <= top) {
+            return null;
+        }
+        Point3 circle;
+        try (Mat roi = gray.submat(top, bottom, left, right)) {
+            circle = houghNearCenter(roi, circles,
+                    screenWidth / 2.0 - left,
+                    round(screenHeight * MIN_DIST_PERCENT),
+                    ACC_THRESHOLD,
+                    Math.max(1, round(coarse.z) - REFINE_MARGIN),
+                    round(coarse.z) + REFINE_MARGIN);
+        }
+        if (circle == null) {
+            return null;
+        }
+        return new Point3(circle.x + left, circle.y + top, circle.z);
+    }
+
+    // Level arc center must be close to the horizontal image center
+    private static Point3 houghNearCenter(Mat gray, MatOfPoint3f circles, double centerX, int minDist, int accThreshold, int minRadius, int maxRadius) {
+        Imgproc.HoughCircles(gray,
+                circles,
+                Imgproc.CV_HOUGH_GRADIENT,
+                ACCUMULATOR,
+                minDist,
+                THRESHOLD,
+                accThreshold,
+                minRadius,
+                maxRadius);
+
+        Point3[] detected = circles.toArray();
+
+        for (Point3 circle : detected) {
+            if (Math.abs(circle.x - centerX) < minDist / 2.0) {
+                return circle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Like {@link #findArcCirclePyramid(Mat, int, int)}, but a calibrated circle that passes
+     * {@link #fitsArc} is returned without running HoughCircles.
+     */
+    public static Point3 findArcCircle(Mat gray, int screenWidth, int screenHeight, ArcCalibration calibration) {
+        try (Mat small = new Mat(); MatOfPoint3f circles = new MatOfPoint3f()) {
+            return findArcCircle(gray, screenWidth, screenHeight, calibration, small, circles);
+        }
+    }
+
+    /**
+     * {@link #findArcCircle(Mat, int, int, ArcCalibration)} with scratch Mats kept by the
+     * caller, see {@link ArcPipeline}.
+     */
+    static Point3 findArcCircle(Mat gray, int screenWidth, int screenHeight, ArcCalibration calibration, Mat small, MatOfPoint3f circles) {
+        if (calibration == null) {
+            return findArcCirclePyramid(gray, screenWidth, screenHeight, small, circles);
+        }
+        ArcCircle calibrated = calibration.getCircle();
+        if (calibrated != null && fitsArc(gray, calibrated)) {
+            return new Point3(calibrated.getX(), calibrated.getY(), calibrated.getRadius());
+        }
+        Point3 circle = findArcCirclePyramid(gray, screenWidth, screenHeight, small, circles);
+        if (circle != null) {
+            ArcCircle detected = new ArcCircle(circle.x, circle.y, circle.z);
+            // only detections that look like the arc count towards calibration
+            if (fitsArc(gray, detected)) {
+                calibration.record(detected);
+            }
+        }
+        return circle;
+    }
+
+    /**
+     * Cheap check that a thin bright ring runs along the upper half of {@code circle}:
+     * samples the ring and both of its sides at {@link #FIT_SAMPLES} angles.
+     */
+    public static boolean fitsArc(Mat gray, ArcCircle circle) {
+        double radius = circle.getRadius();
+        double offset = Math.max(6, radius / 25);
+        int samples = 0;
+        int hits = 0;
+        for (int i = 0; i < FIT_SAMPLES; i++) {
+            double angleRad = Math.PI * (i + 0.5) / FIT_SAMPLES;
+            int ring = -1;
+            for (int d = -3; d <= 3; d++) {
+                ring = Math.max(ring, grayAt(gray, circle, radius + d, angleRad));
+            }
+            int inside = grayAt(gray, circle, radius - offset, angleRad);
+            int outside = grayAt(gray, circle, radius + offset, angleRad);
+            if (ring < 0 || inside < 0 || outside < 0) {
+                continue;
+            }
+            samples++;
+            if (ring - Math.max(inside, outside) >= FIT_CONTRAST) {
+                hits++;
+            }
+        }
+        return samples >= FIT_SAMPLES / 2 && hits >= samples * FIT_RATIO;
+    }
+
+    private static int grayAt(Mat gray, ArcCircle circle, double radius, double angleRad) {
+        int x = round(circle.getX() + radius * Math.cos(angleRad));
+        int y = round(circle.getY() - radius * Math.sin(angleRad));
+        if (x < 0 || y < 0 || x >= gray.cols() || y >= gray.rows()) {
+            return -1;
+        }
+        return (int) gray.get(y, x)[0];
+    }
+
+    public static void threshold(Mat gray, Mat thresh) {
+        Imgproc.threshold(gray, thresh, ANGLE_THRESH, 255, Imgproc.THRESH_BINARY);
+    }
+
+    public static void distanceTransform(Mat thresh, Mat threshDist) {
+        Imgproc.distanceTransform(thresh, threshDist, Imgproc.DIST_L2, Imgproc.DIST_MASK_5);
+    }
+
+    /**
+     * Box around the upper half of {@code circle}, clipped to the image, that holds every level
+     * endpoint with a margin for the level marker around it. Threshold and distance transform
+     * only need to run on it.
+     */
+    public static Rect arcRoi(Point3 circle, int cols, int rows) {
+        // the level marker is about radius / 25 wide
+        int margin = Math.max(8, (int) (circle.z / 8));
+        int left = clamp((int) Math.floor(circle.x - circle.z) - margin, cols);
+        int right = clamp((int) Math.ceil(circle.x + circle.z) + margin + 1, cols);
+        int top = clamp((int) Math.floor(circle.y - circle.z) - margin, rows);
+        int bottom = clamp((int) Math.ceil(circle.y) + margin + 1, rows);
+        return new Rect(left, top, Math.max(1, right - left), Math.max(1, bottom - top));
+    }
+
+    /**
+     * Distance map value at every level endpoint of {@code geometry}, given in screen
+     * coordinates while the map starts at ({@code offsetX}, {@code offsetY}).
+     */
+    public static int[] sampleLevels(Mat threshDist, ArcGeometry geometry, int offsetX, int offsetY, MatSampler sampler) {
+        float[] values = sampler.sample(threshDist, geometry.xs(), geometry.ys(), offsetX, offsetY);
+        int[] distances = new int[geometry.levelCount()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = round(values[i]);
+        }
+        return distances;
+    }
+
+    /**
+     * Draws the detected arc and the sampled levels on {@code mat}, the top half of the screen
+     * scaled by {@code scale}, and stacks the threshold image of the same size below it into
+     * {@code out}.
+     */
+    public static void renderDebug(Mat mat, ArcAnalysis analysis, Mat thresh, double scale, Mat out) {
+        int trainerLevel = analysis.getTrainerLevel();
+        Point center = new Point(analysis.getCenterX() * scale, analysis.getCenterY() * scale);
+        int radius = round(analysis.getRadius() * scale);
+        int thickness = Math.max(1, round(2 * scale));
+
+        Imgproc.circle(mat, center, Math.max(1, round(3 * scale)), new Scalar(0, 255, 255, 255), -1);
+        Imgproc.circle(mat, center, radius, new Scalar(0, 0, 255, 255), thickness);
+
+        for (double angleRad : LevelArc.angles(trainerLevel)) {
+            Imgproc.line(mat, arcPoint(center, radius - round(50 * scale), angleRad), arcPoint(center, radius, angleRad), new Scalar(0, 0, 255, 255), thickness);
+        }
+
+        if (analysis.getLevel() > 0) {
+            Point end = arcPoint(center, radius, LevelArc.angle(trainerLevel, analysis.getLevel()));
+            Imgproc.line(mat, center, end, new Scalar(0, 255, 255, 255), thickness);
+        }
+
+        // stack both into out directly, so a reused out is not allocated again
+        out.create(mat.rows() * 2, mat.cols(), mat.type());
+        try (Mat upper = out.rowRange(0, mat.rows()); Mat lower = out.rowRange(mat.rows(), mat.rows() * 2)) {
+            mat.copyTo(upper);
+            Imgproc.cvtColor(thresh, lower, Imgproc.COLOR_GRAY2BGRA);
+        }
+    }
+
+    private static Point arcPoint(Point center, int radius, double angleRad) {
+        return new Point(center.x + radius * Math.cos(angleRad), center.y - radius * Math.sin(angleRad));
+    }
+
+    private static int clamp(int v, int size) {
+        return Math.max(0, Math.min(size, v));
+    }
+
+    private static int round(double v) {
+        return (int) Math.round(v);
+    }
+}
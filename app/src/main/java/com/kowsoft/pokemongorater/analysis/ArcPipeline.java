@@ -0,0 +1,319 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint3f;
+import org.opencv.core.Point3;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Memoized OpenCV analysis of one screen. The blurred gray top half, the arc circle and the
+ * distance map are computed on first use and kept, since none of them depends on the trainer
+ * level: analyzing again for another level only redoes the level sampling.
+ * Threshold and distance map only cover {@link #arcRoi()}, the box around the arc. With
+ * {@link LevelMethod#POLAR_PROFILE} the level comes from an {@link ArcPolarProfile} instead,
+ * which is kept across screens as long as the circle stays the same.
+ * Each stage first checks the {@link Cancellation} given by {@link #setCancellation}.
+ * Instead of the RGBA screen, the pipeline can start from its gray top half, see
+ * {@link #resetGray}. The screen Mat is not owned by the pipeline. {@link #reset(Mat)} moves on to another screen
+ * and keeps the intermediate and scratch Mats for reuse, so screens of the same size do not
+ * allocate native buffers again; {@link #release()} frees them. See {@link ArcSession}.
+ */
+public class ArcPipeline {
+
+    public enum LevelMethod {
+        DISTANCE_MAP,
+        POLAR_PROFILE
+    }
+
+    private final Mat gray = new Mat();
+    private final Mat thresh = new Mat();
+    private final Mat threshDist = new Mat();
+    private final Mat small = new Mat();
+    private final MatOfPoint3f circles = new MatOfPoint3f();
+    private final Mat debugThresh = new Mat();
+    private final Mat debugCanvas = new Mat();
+    private final Mat debugThreshCanvas = new Mat();
+    private final Mat debugColor = new Mat();
+    private final MatSampler sampler = new MatSampler();
+
+    private ArcCalibration calibration;
+    private Mat screen;
+    private Mat grayTop;
+    private int screenWidth;
+    private int screenHeight;
+    private Mat top;
+    private long topData;
+    private boolean grayDone = false;
+    private boolean circleSearched = false;
+    private Point3 circle;
+    private Rect arcRoi;
+    private boolean threshDone = false;
+    private boolean threshDistDone = false;
+    private LevelMethod levelMethod = LevelMethod.DISTANCE_MAP;
+    private Cancellation cancellation = Cancellation.NONE;
+    private ArcPolarProfile polarProfile;
+    private boolean unwrapped = false;
+
+    public ArcPipeline(Mat screen, ArcCalibration calibration) {
+        this.screen = screen;
+        this.calibration = calibration;
+    }
+
+    /**
+     * Forgets everything computed for the previous screen. The Mats keep their buffers, so
+     * screens of the same size do not allocate native memory again.
+     */
+    public void reset(Mat screen, ArcCalibration calibration) {
+        this.calibration = calibration;
+        reset(screen);
+    }
+
+    public void reset(Mat screen) {
+        if (screen != this.screen && top != null) {
+            top.release();
+            top = null;
+        }
+        this.screen = screen;
+        cancellation = Cancellation.NONE;
+        grayTop = null;
+        screenWidth = screen != null ? screen.cols() : 0;
+        screenHeight = screen != null ? screen.rows() : 0;
+        grayDone = false;
+        circleSearched = false;
+        circle = null;
+        arcRoi = null;
+        threshDone = false;
+        threshDistDone = false;
+        unwrapped = false;
+    }
+
+    /**
+     * Moves on to a screen given as its gray top half, e.g. a {@link GrayFrame} put into a
+     * CV_8UC1 Mat, skipping the color conversion. The Mat is not owned by the pipeline.
+     */
+    public void resetGray(Mat grayTop, int screenWidth, int screenHeight, ArcCalibration calibration) {
+        reset(null, calibration);
+        this.grayTop = grayTop;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+    }
+
+    /**
+     * Checked before every stage that still has to run; stays until the next {@link #reset}.
+     */
+    public void setCancellation(Cancellation cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    public void setLevelMethod(LevelMethod levelMethod) {
+        this.levelMethod = levelMethod;
+    }
+
+    public Mat gray() {
+        if (!grayDone) {
+            checkCancelled();
+            long bytes = bytes(gray);
+            if (grayTop != null) {
+                long begin = PipelineMetrics.begin(PipelineMetrics.GAUSSIAN_BLUR);
+                ArcMatAnalyzer.blur(grayTop, gray);
+                PipelineMetrics.end(PipelineMetrics.GAUSSIAN_BLUR, begin);
+            } else {
+                long begin = PipelineMetrics.begin(PipelineMetrics.CVT_COLOR);
+                ArcMatAnalyzer.toGray(top(), gray);
+                PipelineMetrics.end(PipelineMetrics.CVT_COLOR, begin);
+                begin = PipelineMetrics.begin(PipelineMetrics.GAUSSIAN_BLUR);
+                ArcMatAnalyzer.blur(gray);
+                PipelineMetrics.end(PipelineMetrics.GAUSSIAN_BLUR, begin);
+            }
+            PipelineMetrics.addMatBytes(bytes(gray) - bytes);
+            grayDone = true;
+        }
+        return gray;
+    }
+
+    /**
+     * Level arc circle (x, y, radius), or null when the screen has none.
+     */
+    public Point3 circle() {
+        if (!circleSearched) {
+            checkCancelled();
+            Mat gray = gray();
+            long begin = PipelineMetrics.begin(PipelineMetrics.FIND_CIRCLE);
+            long bytes = bytes(small) + bytes(circles);
+            circle = ArcMatAnalyzer.findArcCircle(gray, screenWidth, screenHeight, calibration, small, circles);
+            PipelineMetrics.addMatBytes(bytes(small) + bytes(circles) - bytes);
+            PipelineMetrics.end(PipelineMetrics.FIND_CIRCLE, begin);
+            circleSearched = true;
+        }
+        return circle;
+    }
+
+    /**
+     * Box in top half coordinates that holds every level endpoint, see
+     * {@link ArcMatAnalyzer#arcRoi}. Only valid when a circle was found.
+     */
+    public Rect arcRoi() {
+        if (arcRoi == null) {
+            arcRoi = ArcMatAnalyzer.arcRoi(circle(), gray().cols(), gray().rows());
+        }
+        return arcRoi;
+    }
+
+    /**
+     * Threshold image of {@link #arcRoi()}.
+     */
+    public Mat thresh() {
+        if (!threshDone) {
+            checkCancelled();
+            long bytes = bytes(thresh);
+            try (Mat roi = gray().submat(arcRoi())) {
+                long begin = PipelineMetrics.begin(PipelineMetrics.THRESHOLD);
+                ArcMatAnalyzer.threshold(roi, thresh);
+                PipelineMetrics.end(PipelineMetrics.THRESHOLD, begin);
+            }
+            PipelineMetrics.addMatBytes(bytes(thresh) - bytes);
+            threshDone = true;
+        }
+        return thresh;
+    }
+
+    /**
+     * Distance map of {@link #arcRoi()}.
+     */
+    public Mat distanceMap() {
+        if (!threshDistDone) {
+            checkCancelled();
+            long bytes = bytes(threshDist);
+            Mat thresh = thresh();
+            long begin = PipelineMetrics.begin(PipelineMetrics.DISTANCE_TRANSFORM);
+            ArcMatAnalyzer.distanceTransform(thresh, threshDist);
+            PipelineMetrics.end(PipelineMetrics.DISTANCE_TRANSFORM, begin);
+            PipelineMetrics.addMatBytes(bytes(threshDist) - bytes);
+            threshDistDone = true;
+        }
+        return threshDist;
+    }
+
+    /**
+     * Polar profile of the arc, unwrapped from this screen. Only valid when a circle was found.
+     */
+    public ArcPolarProfile polarProfile() {
+        Point3 circle = circle();
+        if (polarProfile == null || !polarProfile.isFor(circle)) {
+            if (polarProfile != null) {
+                polarProfile.release();
+            }
+            polarProfile = new ArcPolarProfile(circle);
+            unwrapped = false;
+        }
+        if (!unwrapped) {
+            checkCancelled();
+            Mat gray = gray();
+            long begin = PipelineMetrics.begin(PipelineMetrics.POLAR_UNWRAP);
+            polarProfile.unwrap(gray);
+            PipelineMetrics.end(PipelineMetrics.POLAR_UNWRAP, begin);
+            unwrapped = true;
+        }
+        return polarProfile;
+    }
+
+    public ArcAnalysis analyze(int trainerLevel) {
+        Point3 circle = circle();
+        if (circle == null) {
+            return ArcAnalysis.invalid();
+        }
+        if (levelMethod == LevelMethod.POLAR_PROFILE) {
+            ArcPolarProfile profile = polarProfile();
+            checkCancelled();
+            long begin = PipelineMetrics.begin(PipelineMetrics.LEVEL_SAMPLING);
+            ArcAnalysis analysis = profile.analyze(trainerLevel);
+            PipelineMetrics.end(PipelineMetrics.LEVEL_SAMPLING, begin);
+            return analysis;
+        }
+        int radius = (int) Math.round(circle.z);
+        Rect roi = arcRoi();
+        Mat threshDist = distanceMap();
+        checkCancelled();
+        long begin = PipelineMetrics.begin(PipelineMetrics.LEVEL_SAMPLING);
+        ArcGeometry geometry = ArcGeometry.of(trainerLevel, circle.x, circle.y, radius);
+        int[] distances = ArcMatAnalyzer.sampleLevels(threshDist, geometry, roi.x, roi.y, sampler);
+        PipelineMetrics.end(PipelineMetrics.LEVEL_SAMPLING, begin);
+        return ArcAnalysis.valid(trainerLevel, circle.x, circle.y, radius, distances);
+    }
+
+    /**
+     * Renders the debug image of a valid analysis into {@code out}, shrunk by
+     * {@code downscale}. The screen itself is left untouched, so it can be rendered again.
+     */
+    public void renderDebug(ArcAnalysis analysis, int downscale, Mat out) {
+        Mat gray = gray();
+        checkCancelled();
+        long begin = PipelineMetrics.begin(PipelineMetrics.DEBUG_RENDER);
+        long bytes = bytes(debugThresh) + bytes(debugCanvas) + bytes(debugThreshCanvas) + bytes(debugColor);
+        Mat mat;
+        if (grayTop != null) {
+            Imgproc.cvtColor(grayTop, debugColor, Imgproc.COLOR_GRAY2RGBA);
+            mat = debugColor;
+        } else {
+            mat = top();
+        }
+        // the debug image shows the threshold of the whole top half, not just the arc box
+        ArcMatAnalyzer.threshold(gray, debugThresh);
+        Mat threshCanvas = debugThresh;
+        if (downscale > 1) {
+            // shrink before drawing, so only the small image is converted and stacked
+            Size size = new Size(mat.cols() / downscale, mat.rows() / downscale);
+            Imgproc.resize(mat, debugCanvas, size, 0, 0, Imgproc.INTER_AREA);
+            Imgproc.resize(debugThresh, debugThreshCanvas, size, 0, 0, Imgproc.INTER_AREA);
+            threshCanvas = debugThreshCanvas;
+        } else {
+            mat.copyTo(debugCanvas);
+        }
+        ArcMatAnalyzer.renderDebug(debugCanvas, analysis, threshCanvas, debugCanvas.cols() / (double) mat.cols(), out);
+        PipelineMetrics.addMatBytes(bytes(debugThresh) + bytes(debugCanvas) + bytes(debugThreshCanvas) + bytes(debugColor) - bytes);
+        PipelineMetrics.end(PipelineMetrics.DEBUG_RENDER, begin);
+    }
+
+    public void release() {
+        for (Mat mat : new Mat[]{gray, thresh, threshDist, small, circles, debugThresh, debugCanvas, debugThreshCanvas, debugColor}) {
+            PipelineMetrics.matReleased(mat);
+            mat.release();
+        }
+        if (top != null) {
+            top.release();
+            top = null;
+        }
+        sampler.release();
+        if (polarProfile != null) {
+            polarProfile.release();
+            polarProfile = null;
+        }
+        reset(null);
+    }
+
+    private void checkCancelled() {
+        if (cancellation.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    // the top half header is kept as long as the screen keeps its buffer
+    private Mat top() {
+        if (top == null || topData != screen.dataAddr()) {
+            if (top != null) {
+                top.release();
+            }
+            top = ArcMatAnalyzer.topHalf(screen);
+            topData = screen.dataAddr();
+        }
+        return top;
+    }
+
+    private static long bytes(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+}
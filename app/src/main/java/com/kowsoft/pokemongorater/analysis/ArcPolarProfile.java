@@ -0,0 +1,148 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point3;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+/**
+ * Level estimation from the unwrapped arc. The band around the upper half of the circle is
+ * remapped into a strip with one column per angle and one row per radius, thresholded and
+ * collapsed into a 1D profile: the number of white pixels across the band at each angle.
+ * The level marker is the peak of the profile; its centroid gives a continuous angle.
+ * The remap tables only depend on the circle, so one instance serves every screen with the
+ * same arc geometry. Not thread-safe.
+ */
+public class ArcPolarProfile {
+
+    private static final int MIN_ANGLE_BINS = 180;
+    // the level marker is about radius / 25 wide, the band has to hold all of it
+    private static final double BAND_PERCENT = 1 / 12.0;
+    private static final int MIN_BAND = 4;
+    private static final int MIN_PEAK_CONTRAST = 3;
+
+    private final Point3 circle;
+    private final int angleBins;
+    private final Mat mapX;
+    private final Mat mapY;
+    private final Mat strip = new Mat();
+    private final Mat profileMat = new Mat();
+    private final int[] profile;
+    private double markerAngle = Double.NaN;
+
+    public ArcPolarProfile(Point3 circle) {
+        this.circle = circle;
+        int band = Math.max(MIN_BAND, (int) Math.round(circle.z * BAND_PERCENT));
+        int radialBins = 2 * band + 1;
+        // about one bin per pixel of arc length
+        angleBins = Math.max(MIN_ANGLE_BINS, (int) Math.round(Math.PI * circle.z));
+        profile = new int[angleBins];
+
+        float[] xs = new float[radialBins * angleBins];
+        float[] ys = new float[radialBins * angleBins];
+        for (int j = 0; j < radialBins; j++) {
+            double radius = circle.z - band + j;
+            for (int i = 0; i < angleBins; i++) {
+                double angleRad = binAngle(i);
+                xs[j * angleBins + i] = (float) (circle.x + radius * Math.cos(angleRad));
+                ys[j * angleBins + i] = (float) (circle.y - radius * Math.sin(angleRad));
+            }
+        }
+        mapX = new Mat(radialBins, angleBins, CvType.CV_32FC1);
+        mapY = new Mat(radialBins, angleBins, CvType.CV_32FC1);
+        mapX.put(0, 0, xs);
+        mapY.put(0, 0, ys);
+        PipelineMetrics.matAllocated(mapX);
+        PipelineMetrics.matAllocated(mapY);
+    }
+
+    public boolean isFor(Point3 circle) {
+        return this.circle.x == circle.x && this.circle.y == circle.y && this.circle.z == circle.z;
+    }
+
+    /**
+     * Unwraps the arc of {@code gray}, the blurred gray top half, and finds the marker.
+     * Returns the profile, which is reused by the next call.
+     */
+    public int[] unwrap(Mat gray) {
+        long bytes = PipelineMetrics.matBytes(strip) + PipelineMetrics.matBytes(profileMat);
+        Imgproc.remap(gray, strip, mapX, mapY, Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(0));
+        Imgproc.threshold(strip, strip, ArcMatAnalyzer.ANGLE_THRESH, 1, Imgproc.THRESH_BINARY);
+        Core.reduce(strip, profileMat, 0, Core.REDUCE_SUM, CvType.CV_32S);
+        PipelineMetrics.addMatBytes(PipelineMetrics.matBytes(strip) + PipelineMetrics.matBytes(profileMat) - bytes);
+        profileMat.get(0, 0, profile);
+        markerAngle = findMarker();
+        return profile;
+    }
+
+    /**
+     * Continuous angle of the level marker found by the last {@link #unwrap}, in radians like
+     * {@link LevelArc#angle}, or NaN when the profile has no clear peak.
+     */
+    public double getMarkerAngle() {
+        return markerAngle;
+    }
+
+    /**
+     * Analysis of the last unwrapped screen: the level closest to the marker angle, and the
+     * profile value at each level angle as its distance.
+     */
+    public ArcAnalysis analyze(int trainerLevel) {
+        double[] angles = LevelArc.angles(trainerLevel);
+        int[] distances = new int[angles.length];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = profile[angleBin(angles[i])];
+        }
+        double level = Double.isNaN(markerAngle) ? -1 : LevelArc.closestLevel(trainerLevel, markerAngle);
+        return ArcAnalysis.valid(trainerLevel, level, circle.x, circle.y, (int) Math.round(circle.z), distances);
+    }
+
+    public void release() {
+        for (Mat mat : new Mat[]{mapX, mapY, strip, profileMat}) {
+            PipelineMetrics.matReleased(mat);
+            mat.release();
+        }
+    }
+
+    private double findMarker() {
+        int peak = 0;
+        for (int i = 1; i < angleBins; i++) {
+            if (profile[i] > profile[peak]) {
+                peak = i;
+            }
+        }
+        // the arc line itself gives the baseline
+        int[] sorted = profile.clone();
+        Arrays.sort(sorted);
+        int baseline = sorted[angleBins / 2];
+        if (profile[peak] - baseline < MIN_PEAK_CONTRAST || profile[peak] < 2 * baseline) {
+            return Double.NaN;
+        }
+        // centroid of the peak above half height, so a partly covered marker still centers
+        double halfHeight = (profile[peak] + baseline) / 2.0;
+        double sum = 0;
+        double weighted = 0;
+        for (int i = peak; i >= 0 && profile[i] > halfHeight; i--) {
+            sum += profile[i] - baseline;
+            weighted += (profile[i] - baseline) * i;
+        }
+        for (int i = peak + 1; i < angleBins && profile[i] > halfHeight; i++) {
+            sum += profile[i] - baseline;
+            weighted += (profile[i] - baseline) * i;
+        }
+        return binAngle(weighted / sum);
+    }
+
+    private double binAngle(double bin) {
+        return Math.PI * (bin + 0.5) / angleBins;
+    }
+
+    private int angleBin(double angleRad) {
+        int bin = (int) Math.round(angleRad / Math.PI * angleBins - 0.5);
+        return Math.max(0, Math.min(angleBins - 1, bin));
+    }
+}
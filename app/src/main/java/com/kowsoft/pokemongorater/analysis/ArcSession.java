@@ -0,0 +1,173 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Native buffers for analyzing screens of one resolution: the screen Mat, an
+ * {@link ArcPipeline} with all of its intermediate Mats, and scratch Mats for a gray top half
+ * and the debug image. Sessions are pooled, so analyzing one screenshot after the other does not
+ * allocate native memory once the first one is done.
+ * <p>
+ * {@link #obtain} hands a session to a single user until it calls {@link #recycle()}, which
+ * keeps it for the next screen of the same size, or {@link #release()}, which frees it.
+ * {@link #releasePooled()} frees the pooled one when analysis is over for a while.
+ */
+public final class ArcSession {
+
+    private static ArcSession pooled;
+
+    private final int width;
+    private final int height;
+    private final Mat screen = new Mat();
+    private final Mat grayTop = new Mat();
+    private final Mat debug = new Mat();
+    private final ArcPipeline pipeline = new ArcPipeline(null, null);
+    private byte[] row;
+    private boolean released = false;
+
+    private ArcSession(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public static ArcSession obtain(int width, int height) {
+        synchronized (ArcSession.class) {
+            ArcSession session = pooled;
+            pooled = null;
+            if (session != null && session.isFor(width, height)) {
+                return session;
+            }
+            if (session != null) {
+                session.release();
+            }
+        }
+        return new ArcSession(width, height);
+    }
+
+    public static void releasePooled() {
+        ArcSession session;
+        synchronized (ArcSession.class) {
+            session = pooled;
+            pooled = null;
+        }
+        if (session != null) {
+            session.release();
+        }
+    }
+
+    public boolean isFor(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * RGBA Mat of the session's size to copy a screen into, e.g. with {@code Utils.bitmapToMat}.
+     * Its buffer is only allocated when first asked for.
+     */
+    public Mat getScreen() {
+        if (screen.empty()) {
+            screen.create(height, width, CvType.CV_8UC4);
+            PipelineMetrics.matAllocated(screen);
+        }
+        return screen;
+    }
+
+    /**
+     * Copies an RGBA screen of the session's size, e.g. the plane of a screen capture image,
+     * into {@link #getScreen()} row by row, dropping the padding of rows {@code rowStride}
+     * bytes apart.
+     */
+    public Mat putScreen(ByteBuffer rgba, int rowStride) {
+        Mat screen = getScreen();
+        int rowBytes = width * 4;
+        if (row == null) {
+            row = new byte[rowBytes];
+        }
+        ByteBuffer rows = rgba.duplicate();
+        for (int y = 0; y < height; y++) {
+            rows.position(y * rowStride);
+            rows.get(row, 0, rowBytes);
+            screen.put(y, 0, row);
+        }
+        return screen;
+    }
+
+    /**
+     * The session's pipeline, reset to analyze {@code screen}, which is {@link #getScreen()}
+     * or any other Mat of the session's size.
+     */
+    public ArcPipeline pipeline(Mat screen, ArcCalibration calibration) {
+        pipeline.reset(screen, calibration);
+        return pipeline;
+    }
+
+    /**
+     * The session's pipeline, reset to analyze a screen of the session's size given as its
+     * gray top half.
+     */
+    public ArcPipeline grayPipeline(Mat grayTop, ArcCalibration calibration) {
+        pipeline.resetGray(grayTop, width, height, calibration);
+        return pipeline;
+    }
+
+    /**
+     * CV_8UC1 Mat of the top half of a screen of the session's size, e.g. to put a
+     * {@link GrayFrame} into. Its buffer is only allocated when first asked for.
+     */
+    public Mat getGrayTop() {
+        if (grayTop.empty()) {
+            grayTop.create(height / 2, width, CvType.CV_8UC1);
+            PipelineMetrics.matAllocated(grayTop);
+        }
+        return grayTop;
+    }
+
+    /**
+     * Renders the debug image of an analysis by the session's pipeline into the session's
+     * debug Mat, see {@link ArcPipeline#renderDebug}.
+     */
+    public Mat renderDebug(ArcAnalysis analysis, int downscale) {
+        long bytes = PipelineMetrics.matBytes(debug);
+        pipeline.renderDebug(analysis, downscale, debug);
+        PipelineMetrics.matResized(debug, bytes);
+        return debug;
+    }
+
+    /**
+     * Hands the session back to the pool. Another session that is already pooled is kept
+     * instead of this one.
+     */
+    public void recycle() {
+        // drops the calibration and whatever other screen the pipeline looked at
+        pipeline.reset(screen, null);
+        synchronized (ArcSession.class) {
+            if (pooled == null) {
+                pooled = this;
+                return;
+            }
+        }
+        release();
+    }
+
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        pipeline.release();
+        for (Mat mat : new Mat[]{screen, grayTop, debug}) {
+            PipelineMetrics.matReleased(mat);
+            mat.release();
+        }
+    }
+}
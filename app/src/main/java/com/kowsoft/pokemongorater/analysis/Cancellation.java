@@ -0,0 +1,18 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Asked between analysis stages whether the result is still wanted. Stages of a cancelled
+ * analysis throw {@link java.util.concurrent.CancellationException}; what was computed before
+ * stays memoized for the next request.
+ */
+public interface Cancellation {
+
+    Cancellation NONE = new Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    boolean isCancelled();
+}
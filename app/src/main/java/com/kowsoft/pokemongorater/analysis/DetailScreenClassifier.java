@@ -0,0 +1,101 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cheap check whether a screen is a Pokémon detail page, so the arc analysis only runs on
+ * relevant frames. The screen is point sampled into a {@link #THUMB_WIDTH} x
+ * {@link #THUMB_HEIGHT} grid of white / not white cells and the layout is checked: a colored
+ * background at the top, and the white info card from about the middle of the screen down.
+ * Whether the arc itself is there is left to the analyzers.
+ */
+public final class DetailScreenClassifier {
+
+    public static final int THUMB_WIDTH = 36;
+    public static final int THUMB_HEIGHT = 64;
+
+    private static final int WHITE_MIN = 225;
+    private static final int WHITE_SPREAD = 20;
+    private static final double CARD_TOP_MIN = 0.35;
+    private static final double CARD_TOP_MAX = 0.7;
+    private static final double CARD_EDGE_WHITE = 0.8;
+    private static final double CARD_WHITE = 0.6;
+    private static final double BACKGROUND_WHITE = 0.3;
+
+    private DetailScreenClassifier() {
+    }
+
+    /**
+     * Classifies RGBA bytes laid out like an {@code ImageReader} plane, reading only the
+     * sampled pixels with absolute gets.
+     */
+    public static boolean isDetailScreen(ByteBuffer rgba, int width, int height, int rowStride, int pixelStride) {
+        boolean[] white = new boolean[THUMB_WIDTH * THUMB_HEIGHT];
+        for (int ty = 0; ty < THUMB_HEIGHT; ty++) {
+            int line = sample(ty, THUMB_HEIGHT, height) * rowStride;
+            for (int tx = 0; tx < THUMB_WIDTH; tx++) {
+                int p = line + sample(tx, THUMB_WIDTH, width) * pixelStride;
+                white[ty * THUMB_WIDTH + tx] = isWhite(rgba.get(p) & 0xff, rgba.get(p + 1) & 0xff, rgba.get(p + 2) & 0xff);
+            }
+        }
+        return classify(white);
+    }
+
+    /**
+     * Classifies ARGB pixels laid out like {@code Bitmap.getPixels}, e.g. of a bitmap already
+     * scaled down to the thumbnail size.
+     */
+    public static boolean isDetailScreen(int[] argb, int width, int height, int stride) {
+        boolean[] white = new boolean[THUMB_WIDTH * THUMB_HEIGHT];
+        for (int ty = 0; ty < THUMB_HEIGHT; ty++) {
+            int line = sample(ty, THUMB_HEIGHT, height) * stride;
+            for (int tx = 0; tx < THUMB_WIDTH; tx++) {
+                int p = argb[line + sample(tx, THUMB_WIDTH, width)];
+                white[ty * THUMB_WIDTH + tx] = isWhite((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+            }
+        }
+        return classify(white);
+    }
+
+    private static boolean classify(boolean[] white) {
+        // the card starts with a row that is almost entirely white
+        int cardTop = -1;
+        for (int ty = (int) (THUMB_HEIGHT * CARD_TOP_MIN); ty <= (int) (THUMB_HEIGHT * CARD_TOP_MAX); ty++) {
+            if (whiteFraction(white, ty, ty + 1) >= CARD_EDGE_WHITE) {
+                cardTop = ty;
+                break;
+            }
+        }
+        if (cardTop < 0) {
+            return false;
+        }
+        int top = THUMB_HEIGHT / 20;
+        int bottom = THUMB_HEIGHT - THUMB_HEIGHT / 20;
+        return whiteFraction(white, cardTop, bottom) >= CARD_WHITE
+                && whiteFraction(white, top, cardTop) <= BACKGROUND_WHITE;
+    }
+
+    private static double whiteFraction(boolean[] white, int fromRow, int toRow) {
+        if (toRow <= fromRow) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = fromRow * THUMB_WIDTH; i < toRow * THUMB_WIDTH; i++) {
+            if (white[i]) {
+                count++;
+            }
+        }
+        return count / (double) ((toRow - fromRow) * THUMB_WIDTH);
+    }
+
+    private static boolean isWhite(int r, int g, int b) {
+        int min = Math.min(r, Math.min(g, b));
+        int max = Math.max(r, Math.max(g, b));
+        return min >= WHITE_MIN && max - min <= WHITE_SPREAD;
+    }
+
+    // center of the thumbnail cell
+    private static int sample(int t, int thumbSize, int size) {
+        return (int) ((t + 0.5) * size / thumbSize);
+    }
+}
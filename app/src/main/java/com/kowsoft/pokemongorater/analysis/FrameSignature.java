@@ -0,0 +1,89 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Tiny perceptual signature of the level arc of a screen: the number of white pixels across
+ * the band around the arc circle of an earlier analysis, in angular bins one pixel of arc
+ * wide. Moving the level marker by half a level moves it by a few pixels along the arc, which
+ * changes the bins at both of its ends, while the rest of the screen is not read at all. Two
+ * screens whose bins all differ by at most {@link #MAX_BIN_DIFF} give the same analysis.
+ */
+public final class FrameSignature {
+
+    public static final int MAX_BIN_DIFF = 3;
+    // the level marker is about radius / 27 around the arc, and the circle may be off a bit
+    private static final int BAND_DIVISOR = 20;
+    private static final int BAND_MARGIN = 2;
+
+    private final int width;
+    private final int height;
+    private final double centerX;
+    private final double centerY;
+    private final int radius;
+    private final int[] bins;
+
+    private FrameSignature(int width, int height, double centerX, double centerY, int radius, int[] bins) {
+        this.width = width;
+        this.height = height;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+        this.bins = bins;
+    }
+
+    /**
+     * Signature of the arc of a gray top half around the circle found by {@code analysis}, or
+     * null when it found none.
+     */
+    public static FrameSignature ofGray(GrayFrame frame, ArcAnalysis analysis) {
+        if (!analysis.isValid()) {
+            return null;
+        }
+        return ofGray(frame, analysis.getCenterX(), analysis.getCenterY(), analysis.getRadius());
+    }
+
+    /**
+     * Signature of the arc of a gray top half around the given circle.
+     */
+    public static FrameSignature ofGray(GrayFrame frame, double centerX, double centerY, int radius) {
+        int width = frame.getWidth();
+        int rows = frame.getHeight() / 2;
+        byte[] pixels = frame.getPixels();
+        int band = radius / BAND_DIVISOR + BAND_MARGIN;
+        int[] bins = new int[Math.max(1, (int) Math.round(Math.PI * radius))];
+        for (int i = 0; i < bins.length; i++) {
+            double angle = Math.PI * (i + 0.5) / bins.length;
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            int white = 0;
+            for (int r = radius - band; r <= radius + band; r++) {
+                int x = (int) Math.round(centerX + r * cos);
+                int y = (int) Math.round(centerY - r * sin);
+                if (x >= 0 && x < width && y >= 0 && y < rows && (pixels[y * width + x] & 0xff) > JavaArcEngine.ANGLE_THRESH) {
+                    white++;
+                }
+            }
+            bins[i] = white;
+        }
+        return new FrameSignature(width, frame.getHeight(), centerX, centerY, radius, bins);
+    }
+
+    /**
+     * Signature of the same arc band of another frame, to compare with this one.
+     */
+    public FrameSignature of(GrayFrame frame) {
+        return ofGray(frame, centerX, centerY, radius);
+    }
+
+    public boolean isCloseTo(FrameSignature other) {
+        if (other == null || other.width != width || other.height != height
+                || other.centerX != centerX || other.centerY != centerY || other.radius != radius) {
+            return false;
+        }
+        for (int i = 0; i < bins.length; i++) {
+            if (Math.abs(bins[i] - other.bins[i]) > MAX_BIN_DIFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The part of a screen the analysis looks at: the top half, as one luminance byte per pixel,
+ * with rows packed at {@code width}. Converting while copying out of the capture plane moves
+ * an eighth of the bytes of the full RGBA screen. The buffer is reused by the next copy of a
+ * screen of the same size; not thread-safe.
+ * <p>
+ * Several frames of a burst can be fused with {@link #maxRgba}: the arc and the level marker
+ * are white, so the parts the animated Pokémon or floating objects cover in one frame come
+ * through from another.
+ */
+public final class GrayFrame {
+
+    private byte[] pixels = new byte[0];
+    private byte[] line = new byte[0];
+    private int width;
+    private int height;
+
+    /**
+     * Copies the top half of RGBA bytes laid out like an {@code ImageReader} plane, reading the
+     * buffer from its start without changing its position.
+     */
+    public void copyRgba(ByteBuffer rgba, int width, int height, int rowStride, int pixelStride) {
+        prepare(width, height);
+        readRgba(rgba, rowStride, pixelStride, false);
+    }
+
+    /**
+     * Keeps the brighter of this frame and the top half of {@code rgba} at every pixel. Falls
+     * back to a copy when the screen size differs.
+     */
+    public void maxRgba(ByteBuffer rgba, int width, int height, int rowStride, int pixelStride) {
+        boolean sameSize = width == this.width && height == this.height;
+        prepare(width, height);
+        readRgba(rgba, rowStride, pixelStride, sameSize);
+    }
+
+    private void readRgba(ByteBuffer rgba, int rowStride, int pixelStride, boolean max) {
+        int lineSize = (width - 1) * pixelStride + 4;
+        if (line.length < lineSize) {
+            line = new byte[lineSize];
+        }
+        ByteBuffer src = rgba.duplicate();
+        int rows = height / 2;
+        for (int y = 0; y < rows; y++) {
+            src.position(y * rowStride);
+            src.get(line, 0, lineSize);
+            int dst = y * width;
+            for (int x = 0, p = 0; x < width; x++, p += pixelStride) {
+                byte l = luminance(line[p] & 0xff, line[p + 1] & 0xff, line[p + 2] & 0xff);
+                if (!max || (l & 0xff) > (pixels[dst + x] & 0xff)) {
+                    pixels[dst + x] = l;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the top half of ARGB pixels laid out like {@code Bitmap.getPixels}.
+     */
+    public void copyArgb(int[] argb, int offset, int width, int height, int stride) {
+        prepare(width, height);
+        int rows = height / 2;
+        for (int y = 0; y < rows; y++) {
+            int src = offset + y * stride;
+            int dst = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = argb[src + x];
+                pixels[dst + x] = luminance((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Luminance of the top half, {@code width * (height / 2)} bytes are valid.
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Height of the whole screen, twice the rows held.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    // Same weights as the OpenCV path, which converts the RGBA bitmap with COLOR_BGRA2GRAY
+    static byte luminance(int r, int g, int b) {
+        return (byte) ((r * 1868 + g * 9617 + b * 4899 + (1 << 13)) >> 14);
+    }
+
+    private void prepare(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int size = width * (height / 2);
+        if (pixels.length != size) {
+            pixels = new byte[size];
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the IV combinations matching the CP and HP shown for a Pokémon, at the level read from
+ * the arc or over a range of candidate levels. All 4096 combinations of each half level are
+ * checked against the precomputed {@link IvTable} of the species: HP rules out most stamina
+ * values first, then only the 256 CPs of each remaining stamina are compared.
+ */
+public final class IvCalculator {
+
+    public static final double MAX_LEVEL = 40;
+
+    private IvCalculator() {
+    }
+
+    /**
+     * Combinations at exactly {@code level}, e.g. {@link ArcAnalysis#getLevel()}.
+     */
+    public static IvRange calculate(Species species, int cp, int hp, double level) {
+        return calculate(species, cp, hp, level, level);
+    }
+
+    /**
+     * Combinations at every half level from {@code minLevel} to {@code maxLevel}, clamped to
+     * the levels a Pokémon can have.
+     */
+    public static IvRange calculate(Species species, int cp, int hp, double minLevel, double maxLevel) {
+        IvTable table = IvTable.of(species);
+        short[] cps = table.cp();
+        short[] hps = table.hp();
+        int from = Math.max(levelIndex(minLevel), 0);
+        int to = Math.min(levelIndex(maxLevel), IvTable.LEVELS - 1);
+        List<IvCombination> combinations = new ArrayList<>();
+        for (int level = from; level <= to; level++) {
+            for (int stamina = 0; stamina < IvTable.IVS; stamina++) {
+                if (hps[level * IvTable.IVS + stamina] != hp) {
+                    continue;
+                }
+                int base = level * IvTable.COMBINATIONS + (stamina << 8);
+                for (int i = 0; i < IvTable.IVS * IvTable.IVS; i++) {
+                    if (cps[base + i] == cp) {
+                        combinations.add(new IvCombination(LevelArc.level(level), i >> 4, i & 0xf, stamina));
+                    }
+                }
+            }
+        }
+        return new IvRange(Collections.unmodifiableList(combinations));
+    }
+
+    private static int levelIndex(double level) {
+        return (int) Math.round((level - LevelArc.MIN_LEVEL) / LevelArc.LEVEL_STEP);
+    }
+}
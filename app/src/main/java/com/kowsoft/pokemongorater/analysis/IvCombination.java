@@ -0,0 +1,46 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Level and individual values of a Pokémon, each IV from 0 to 15.
+ */
+public final class IvCombination {
+    private final double level;
+    private final int attack;
+    private final int defense;
+    private final int stamina;
+
+    public IvCombination(double level, int attack, int defense, int stamina) {
+        this.level = level;
+        this.attack = attack;
+        this.defense = defense;
+        this.stamina = stamina;
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public int getAttack() {
+        return attack;
+    }
+
+    public int getDefense() {
+        return defense;
+    }
+
+    public int getStamina() {
+        return stamina;
+    }
+
+    /**
+     * Sum of the IVs relative to the perfect 45, from 0 to 100.
+     */
+    public double getPercent() {
+        return (attack + defense + stamina) * 100.0 / 45;
+    }
+
+    @Override
+    public String toString() {
+        return "L" + level + " " + attack + "/" + defense + "/" + stamina;
+    }
+}
@@ -0,0 +1,51 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import java.util.List;
+
+/**
+ * All IV combinations that match a Pokémon, see {@link IvCalculator}.
+ */
+public final class IvRange {
+    private final List<IvCombination> combinations;
+
+    IvRange(List<IvCombination> combinations) {
+        this.combinations = combinations;
+    }
+
+    public List<IvCombination> getCombinations() {
+        return combinations;
+    }
+
+    /**
+     * No combination matches, e.g. because CP, HP or level were misread.
+     */
+    public boolean isEmpty() {
+        return combinations.isEmpty();
+    }
+
+    /**
+     * Lowest IV percentage, NaN when empty.
+     */
+    public double getMinPercent() {
+        double min = Double.NaN;
+        for (IvCombination combination : combinations) {
+            if (Double.isNaN(min) || combination.getPercent() < min) {
+                min = combination.getPercent();
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Highest IV percentage, NaN when empty.
+     */
+    public double getMaxPercent() {
+        double max = Double.NaN;
+        for (IvCombination combination : combinations) {
+            if (Double.isNaN(max) || combination.getPercent() > max) {
+                max = combination.getPercent();
+            }
+        }
+        return max;
+    }
+}
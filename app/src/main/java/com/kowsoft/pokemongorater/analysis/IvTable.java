@@ -0,0 +1,65 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CP and HP of one species at every half level up to {@link IvCalculator#MAX_LEVEL} and every
+ * IV combination, computed once so a lookup only compares shorts. CP is stored at
+ * {@code level * 4096 + (stamina << 8 | attack << 4 | defense)}, so the 256 attack and defense
+ * combinations of a stamina are contiguous. A table takes 650 KB, only the most recently used
+ * ones are kept.
+ */
+final class IvTable {
+    static final int IVS = 16;
+    static final int LEVELS = (int) Math.round((IvCalculator.MAX_LEVEL - LevelArc.MIN_LEVEL) / LevelArc.LEVEL_STEP) + 1;
+    static final int COMBINATIONS = IVS * IVS * IVS;
+
+    private static final int MAX_TABLES = 4;
+    private static final Map<Species, IvTable> tables = new LinkedHashMap<Species, IvTable>(MAX_TABLES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Species, IvTable> eldest) {
+            return size() > MAX_TABLES;
+        }
+    };
+
+    private final short[] cp = new short[LEVELS * COMBINATIONS];
+    private final short[] hp = new short[LEVELS * IVS];
+
+    private IvTable(Species species) {
+        for (int level = 0; level < LEVELS; level++) {
+            double cpm = LevelArc.getCPM(LevelArc.level(level));
+            double cpmSquared = cpm * cpm;
+            for (int stamina = 0; stamina < IVS; stamina++) {
+                double sta = species.getBaseStamina() + stamina;
+                hp[level * IVS + stamina] = (short) Math.max(10, (int) Math.floor(sta * cpm));
+                double staRoot = Math.sqrt(sta);
+                for (int attack = 0; attack < IVS; attack++) {
+                    double atk = species.getBaseAttack() + attack;
+                    int i = level * COMBINATIONS + (stamina << 8 | attack << 4);
+                    for (int defense = 0; defense < IVS; defense++) {
+                        double def = species.getBaseDefense() + defense;
+                        cp[i + defense] = (short) Math.max(10, (int) Math.floor(atk * Math.sqrt(def) * staRoot * cpmSquared / 10));
+                    }
+                }
+            }
+        }
+    }
+
+    static synchronized IvTable of(Species species) {
+        IvTable table = tables.get(species);
+        if (table == null) {
+            table = new IvTable(species);
+            tables.put(species, table);
+        }
+        return table;
+    }
+
+    short[] cp() {
+        return cp;
+    }
+
+    short[] hp() {
+        return hp;
+    }
+}
@@ -0,0 +1,466 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import java.util.Arrays;
+
+/**
+ * OpenCV-free level arc analysis working on raw pixel buffers, so it runs on a plain JVM.
+ * It follows the same steps as PokemonScreenAnalyzer: grayscale top half, 9x9 gaussian blur,
+ * a gradient based circle search restricted to centers close to the middle of the screen,
+ * refined by a least-squares fit over the edge pixels of the arc, and distance sampling at the
+ * arc endpoint of every half level.
+ * Working buffers are kept between calls, so an engine must not be shared between threads.
+ */
+public class JavaArcEngine {
+
+    private static final double MIN_DIST_PERCENT = 0.1;
+    private static final double MIN_RADIUS_PERCENT = 0.125;
+    private static final double MAX_RADIUS_PERCENT = 0.5;
+
+    // Gaussian 9x9, sigma 2, in 8 bit fixed point
+    private static final int[] BLUR_KERNEL = {7, 17, 32, 46, 52, 46, 32, 17, 7};
+    private static final int BLUR_RADIUS = BLUR_KERNEL.length / 2;
+
+    public static final int EDGE_THRESHOLD = 100;
+    public static final int MIN_VOTES = 100;
+    public static final double RADIAL_COS = 0.9;
+    public static final int ANGLE_THRESH = 245;
+    // the fit keeps the edges ever closer to the circle fitted before, as a fraction of its radius
+    private static final double[] FIT_TOLERANCES = {1 / 20.0, 1 / 40.0, 1 / 80.0};
+    private static final double MIN_FIT_TOLERANCE = 3;
+
+    private final int trainerLevel;
+
+    private int width;
+    private int rows;
+    private byte[] gray = new byte[0];
+    private byte[] blurTmp = new byte[0];
+    private short[] magnitude = new short[0];
+    private int[] edgePos = new int[0];
+    private int[] edgeGrad = new int[0];
+    private int edgeCount;
+    private int[] votes = new int[0];
+    private int[] radiusVotes = new int[0];
+    private double circleX;
+    private double circleY;
+    private int circleRadius = -1;
+
+    public JavaArcEngine(int trainerLevel) {
+        this.trainerLevel = trainerLevel;
+    }
+
+    /**
+     * Analyzes ARGB pixels laid out like {@code Bitmap.getPixels}. Only the top half of the
+     * screen is read, so {@code pixels} may hold just the first {@code height / 2} rows.
+     */
+    public ArcAnalysis analyzeArgb(int[] pixels, int offset, int width, int height, int stride) {
+        prepare(width, height);
+        for (int y = 0; y < rows; y++) {
+            int src = offset + y * stride;
+            int dst = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = pixels[src + x];
+                gray[dst + x] = GrayFrame.luminance((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+            }
+        }
+        return analyze();
+    }
+
+    /**
+     * Analyzes RGBA bytes laid out like an {@code ImageReader} plane. Only the top half of the
+     * screen is read, so {@code pixels} may hold just the first {@code height / 2} rows.
+     */
+    public ArcAnalysis analyzeRgba(byte[] pixels, int offset, int width, int height, int rowStride, int pixelStride) {
+        prepare(width, height);
+        for (int y = 0; y < rows; y++) {
+            int src = offset + y * rowStride;
+            int dst = y * width;
+            for (int x = 0; x < width; x++, src += pixelStride) {
+                gray[dst + x] = GrayFrame.luminance(pixels[src] & 0xff, pixels[src + 1] & 0xff, pixels[src + 2] & 0xff);
+            }
+        }
+        return analyze();
+    }
+
+    /**
+     * Analyzes a screen whose top half was already converted to luminance.
+     */
+    public ArcAnalysis analyzeGray(GrayFrame frame) {
+        prepare(frame.getWidth(), frame.getHeight());
+        // the blur works in place, the frame stays untouched
+        System.arraycopy(frame.getPixels(), 0, gray, 0, width * rows);
+        return analyze();
+    }
+
+    private void prepare(int width, int height) {
+        this.width = width;
+        this.rows = height / 2;
+        int size = width * rows;
+        if (gray.length < size) {
+            gray = new byte[size];
+            blurTmp = new byte[size];
+            magnitude = new short[size];
+        }
+    }
+
+    private ArcAnalysis analyze() {
+        blur();
+        findEdges();
+
+        int minDist = round(rows * 2 * MIN_DIST_PERCENT);
+        int bandMin = Math.max((width - minDist) / 2, 0);
+        int bandMax = Math.min((width + minDist) / 2, width - 1);
+        int minRadius = round(width * MIN_RADIUS_PERCENT);
+        int maxRadius = round(width * MAX_RADIUS_PERCENT);
+
+        circleRadius = -1;
+        int center = findCenter(bandMin, bandMax, minRadius, maxRadius);
+        if (center < 0) {
+            return ArcAnalysis.invalid();
+        }
+        int cx = center % width;
+        int cy = center / width;
+        int radius = findRadius(cx, cy, minRadius, maxRadius);
+        if (radius < 0) {
+            return ArcAnalysis.invalid();
+        }
+        circleX = cx;
+        circleY = cy;
+        circleRadius = radius;
+        refineCircle();
+        return resample(trainerLevel);
+    }
+
+    /**
+     * Estimates the level of the last analyzed screen for another trainer level, reusing its
+     * blurred image and arc circle.
+     */
+    public ArcAnalysis resample(int trainerLevel) {
+        if (circleRadius < 0) {
+            return ArcAnalysis.invalid();
+        }
+        ArcGeometry geometry = ArcGeometry.of(trainerLevel, circleX, circleY, circleRadius);
+        int maxDist = Math.max(8, circleRadius / 4);
+        int[] distances = new int[geometry.levelCount()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = round(distanceToDark(geometry.x(i), geometry.y(i), maxDist));
+        }
+        return ArcAnalysis.valid(trainerLevel, circleX, circleY, circleRadius, distances);
+    }
+
+    private void blur() {
+        // separable: rows into blurTmp, then columns back into gray
+        for (int y = 0; y < rows; y++) {
+            int line = y * width;
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                if (x >= BLUR_RADIUS && x < width - BLUR_RADIUS) {
+                    int base = line + x - BLUR_RADIUS;
+                    for (int k = 0; k < BLUR_KERNEL.length; k++) {
+                        sum += (gray[base + k] & 0xff) * BLUR_KERNEL[k];
+                    }
+                } else {
+                    for (int k = 0; k < BLUR_KERNEL.length; k++) {
+                        sum += (gray[line + clamp(x + k - BLUR_RADIUS, width)] & 0xff) * BLUR_KERNEL[k];
+                    }
+                }
+                blurTmp[line + x] = (byte) ((sum + 128) >> 8);
+            }
+        }
+        for (int y = 0; y < rows; y++) {
+            boolean inner = y >= BLUR_RADIUS && y < rows - BLUR_RADIUS;
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = 0; k < BLUR_KERNEL.length; k++) {
+                    int row = inner ? y + k - BLUR_RADIUS : clamp(y + k - BLUR_RADIUS, rows);
+                    sum += (blurTmp[row * width + x] & 0xff) * BLUR_KERNEL[k];
+                }
+                gray[y * width + x] = (byte) ((sum + 128) >> 8);
+            }
+        }
+    }
+
+    private void findEdges() {
+        Arrays.fill(magnitude, 0, width * rows, (short) 0);
+        for (int y = 1; y < rows - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int p = y * width + x;
+                magnitude[p] = (short) (Math.abs(sobelX(p)) + Math.abs(sobelY(p)));
+            }
+        }
+
+        // non maximum suppression along the quantized gradient direction
+        edgeCount = 0;
+        for (int y = 1; y < rows - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int p = y * width + x;
+                int mag = magnitude[p];
+                if (mag < EDGE_THRESHOLD) {
+                    continue;
+                }
+                int gx = sobelX(p);
+                int gy = sobelY(p);
+                int ax = Math.abs(gx);
+                int ay = Math.abs(gy);
+                int step;
+                if (ay * 5 < ax * 2) {
+                    step = 1;
+                } else if (ay * 2 > ax * 5) {
+                    step = width;
+                } else if ((gx > 0) == (gy > 0)) {
+                    step = width + 1;
+                } else {
+                    step = width - 1;
+                }
+                if (mag > magnitude[p - step] && mag >= magnitude[p + step]) {
+                    addEdge(p, gx, gy);
+                }
+            }
+        }
+    }
+
+    private void addEdge(int p, int gx, int gy) {
+        if (edgeCount == edgePos.length) {
+            int capacity = Math.max(1024, edgeCount * 2);
+            edgePos = Arrays.copyOf(edgePos, capacity);
+            edgeGrad = Arrays.copyOf(edgeGrad, capacity);
+        }
+        edgePos[edgeCount] = p;
+        edgeGrad[edgeCount] = (gx << 16) | (gy & 0xffff);
+        edgeCount++;
+    }
+
+    private int sobelX(int p) {
+        return (gray[p - width + 1] & 0xff) + 2 * (gray[p + 1] & 0xff) + (gray[p + width + 1] & 0xff)
+                - (gray[p - width - 1] & 0xff) - 2 * (gray[p - 1] & 0xff) - (gray[p + width - 1] & 0xff);
+    }
+
+    private int sobelY(int p) {
+        return (gray[p + width - 1] & 0xff) + 2 * (gray[p + width] & 0xff) + (gray[p + width + 1] & 0xff)
+                - (gray[p - width - 1] & 0xff) - 2 * (gray[p - width] & 0xff) - (gray[p - width + 1] & 0xff);
+    }
+
+    /**
+     * Every edge pixel votes along its gradient line, but only for centers inside the
+     * allowed column band and radius range. Returns the center pixel index or -1.
+     */
+    private int findCenter(int bandMin, int bandMax, int minRadius, int maxRadius) {
+        int bandWidth = bandMax - bandMin + 1;
+        int cells = bandWidth * rows;
+        if (votes.length < cells) {
+            votes = new int[cells];
+        } else {
+            Arrays.fill(votes, 0, cells, 0);
+        }
+
+        for (int i = 0; i < edgeCount; i++) {
+            int x0 = edgePos[i] % width;
+            int y0 = edgePos[i] / width;
+            int gx = edgeGrad[i] >> 16;
+            int gy = (short) edgeGrad[i];
+            double len = Math.sqrt(gx * gx + gy * gy);
+            for (int sign = -1; sign <= 1; sign += 2) {
+                double dx = sign * gx / len;
+                double dy = sign * gy / len;
+                double from = minRadius;
+                double to = maxRadius;
+                if (Math.abs(dx) > 1e-6) {
+                    double t1 = (bandMin - 0.5 - x0) / dx;
+                    double t2 = (bandMax + 0.5 - x0) / dx;
+                    from = Math.max(from, Math.min(t1, t2));
+                    to = Math.min(to, Math.max(t1, t2));
+                } else if (x0 < bandMin || x0 > bandMax) {
+                    continue;
+                }
+                if (Math.abs(dy) > 1e-6) {
+                    double t1 = (-0.5 - y0) / dy;
+                    double t2 = (rows - 0.5 - y0) / dy;
+                    from = Math.max(from, Math.min(t1, t2));
+                    to = Math.min(to, Math.max(t1, t2));
+                }
+                for (int r = (int) Math.ceil(from); r <= to; r++) {
+                    int x = round(x0 + dx * r) - bandMin;
+                    int y = round(y0 + dy * r);
+                    if (x >= 0 && x < bandWidth && y >= 0 && y < rows) {
+                        votes[y * bandWidth + x]++;
+                    }
+                }
+            }
+        }
+
+        int best = 0;
+        int bestX = -1;
+        int bestY = -1;
+        for (int y = 1; y < rows - 1; y++) {
+            for (int x = 1; x < bandWidth - 1; x++) {
+                int c = y * bandWidth + x;
+                if (votes[c] == 0) {
+                    continue;
+                }
+                int sum = votes[c - bandWidth - 1] + votes[c - bandWidth] + votes[c - bandWidth + 1]
+                        + votes[c - 1] + votes[c] + votes[c + 1]
+                        + votes[c + bandWidth - 1] + votes[c + bandWidth] + votes[c + bandWidth + 1];
+                if (sum > best) {
+                    best = sum;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+        }
+        if (best < MIN_VOTES) {
+            return -1;
+        }
+        return bestY * width + bestX + bandMin;
+    }
+
+    /**
+     * Picks the most supported distance among edge pixels whose gradient points at the center.
+     */
+    private int findRadius(int cx, int cy, int minRadius, int maxRadius) {
+        if (radiusVotes.length < maxRadius + 2) {
+            radiusVotes = new int[maxRadius + 2];
+        } else {
+            Arrays.fill(radiusVotes, 0);
+        }
+
+        for (int i = 0; i < edgeCount; i++) {
+            int rx = edgePos[i] % width - cx;
+            int ry = edgePos[i] / width - cy;
+            int gx = edgeGrad[i] >> 16;
+            int gy = (short) edgeGrad[i];
+            double dist = Math.sqrt(rx * rx + ry * ry);
+            int d = round(dist);
+            if (d < minRadius || d > maxRadius) {
+                continue;
+            }
+            double cos = (gx * rx + gy * ry) / (Math.sqrt(gx * gx + gy * gy) * dist);
+            if (Math.abs(cos) >= RADIAL_COS) {
+                radiusVotes[d]++;
+            }
+        }
+
+        int best = 0;
+        int radius = -1;
+        for (int d = minRadius; d <= maxRadius; d++) {
+            int sum = radiusVotes[d - 1] + radiusVotes[d] + radiusVotes[d + 1];
+            if (sum > best) {
+                best = sum;
+                radius = d;
+            }
+        }
+        return best < MIN_VOTES ? -1 : radius;
+    }
+
+    /**
+     * The votes only get the circle to a few pixels, which is half a level at the high end of
+     * the arc on large screens. Fits a circle to the edge pixels close to the voted one, the
+     * inner and outer edge of the arc line alike, and fits again on the edges close to that.
+     */
+    private void refineCircle() {
+        double x0 = circleX;
+        double y0 = circleY;
+        double r0 = circleRadius;
+        for (double tolerance : FIT_TOLERANCES) {
+            double maxOffset = Math.max(MIN_FIT_TOLERANCE, r0 * tolerance);
+            // normal equations of x² + y² + d x + e y + f = 0, relative to the last center
+            double sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0, sz = 0, sxz = 0, syz = 0;
+            int n = 0;
+            for (int i = 0; i < edgeCount; i++) {
+                double rx = edgePos[i] % width - x0;
+                double ry = edgePos[i] / width - y0;
+                double dist = Math.sqrt(rx * rx + ry * ry);
+                if (Math.abs(dist - r0) > maxOffset) {
+                    continue;
+                }
+                int gx = edgeGrad[i] >> 16;
+                int gy = (short) edgeGrad[i];
+                if (Math.abs(gx * rx + gy * ry) < RADIAL_COS * Math.sqrt(gx * gx + gy * gy) * dist) {
+                    continue;
+                }
+                double z = rx * rx + ry * ry;
+                sx += rx;
+                sy += ry;
+                sxx += rx * rx;
+                syy += ry * ry;
+                sxy += rx * ry;
+                sz += z;
+                sxz += rx * z;
+                syz += ry * z;
+                n++;
+            }
+            if (n < MIN_VOTES) {
+                return;
+            }
+            double[] def = solve(sxx, sxy, sx, sxy, syy, sy, sx, sy, n, -sxz, -syz, -sz);
+            if (def == null) {
+                return;
+            }
+            double cx = -def[0] / 2;
+            double cy = -def[1] / 2;
+            double rSquared = cx * cx + cy * cy - def[2];
+            if (rSquared <= 0) {
+                return;
+            }
+            x0 += cx;
+            y0 += cy;
+            r0 = Math.sqrt(rSquared);
+        }
+        circleX = x0;
+        circleY = y0;
+        circleRadius = round(r0);
+    }
+
+    // Cramer's rule for a 3x3 system, null when singular
+    private static double[] solve(double a11, double a12, double a13, double a21, double a22, double a23,
+                                  double a31, double a32, double a33, double b1, double b2, double b3) {
+        double det = a11 * (a22 * a33 - a23 * a32) - a12 * (a21 * a33 - a23 * a31) + a13 * (a21 * a32 - a22 * a31);
+        if (Math.abs(det) < 1e-9) {
+            return null;
+        }
+        double d1 = b1 * (a22 * a33 - a23 * a32) - a12 * (b2 * a33 - a23 * b3) + a13 * (b2 * a32 - a22 * b3);
+        double d2 = a11 * (b2 * a33 - a23 * b3) - b1 * (a21 * a33 - a23 * a31) + a13 * (a21 * b3 - b2 * a31);
+        double d3 = a11 * (a22 * b3 - b2 * a32) - a12 * (a21 * b3 - b2 * a31) + b1 * (a21 * a32 - a22 * a31);
+        return new double[]{d1 / det, d2 / det, d3 / det};
+    }
+
+    /**
+     * Distance from a white pixel to the closest pixel below ANGLE_THRESH, like reading a
+     * distance transform of the thresholded image at a single point. Pixels outside the image
+     * are ignored and the search stops at {@code maxDist}.
+     */
+    private double distanceToDark(int px, int py, int maxDist) {
+        if (!isWhite(px, py)) {
+            return 0;
+        }
+        int best = Integer.MAX_VALUE;
+        for (int d = 1; d <= maxDist && d * d < best; d++) {
+            for (int i = -d; i <= d; i++) {
+                best = closerDark(px, py, px + i, py - d, best);
+                best = closerDark(px, py, px + i, py + d, best);
+                if (i > -d && i < d) {
+                    best = closerDark(px, py, px - d, py + i, best);
+                    best = closerDark(px, py, px + d, py + i, best);
+                }
+            }
+        }
+        return best == Integer.MAX_VALUE ? maxDist : Math.sqrt(best);
+    }
+
+    private int closerDark(int px, int py, int x, int y, int best) {
+        if (x < 0 || x >= width || y < 0 || y >= rows || isWhite(x, y)) {
+            return best;
+        }
+        return Math.min(best, (x - px) * (x - px) + (y - py) * (y - py));
+    }
+
+    private boolean isWhite(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < rows && (gray[y * width + x] & 0xff) > ANGLE_THRESH;
+    }
+
+    private static int clamp(int v, int size) {
+        return v < 0 ? 0 : v >= size ? size - 1 : v;
+    }
+
+    private static int round(double v) {
+        return (int) Math.round(v);
+    }
+}
@@ -0,0 +1,106 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Level arc math shared by the OpenCV and the pure Java analyzers.
+ * Nothing in this package may depend on Android, so it can be compiled and benchmarked on a
+ * desktop JVM; OpenCV is only allowed through its Java bindings.
+ */
+public final class LevelArc {
+
+    // Thanks to http://poke.isitin.org/ for the values
+    private static final double[] CPM = {0.0940000, 0.1351374, 0.1663979, 0.1926509, 0.2157325, 0.2365727, 0.2557201, 0.2735304, 0.2902499, 0.3060574, 0.3210876, 0.3354450, 0.3492127, 0.3624578, 0.3752356, 0.3875924, 0.3995673, 0.4111936, 0.4225000, 0.4335117, 0.4431076, 0.4530600, 0.4627984, 0.4723361, 0.4816850, 0.4908558, 0.4998584, 0.5087018, 0.5173940, 0.5259425, 0.5343543, 0.5426358, 0.5507927, 0.5588306, 0.5667545, 0.5745692, 0.5822789, 0.5898879, 0.5974000, 0.6048188, 0.6121573, 0.6194041, 0.6265671, 0.6336492, 0.6406530, 0.6475810, 0.6544356, 0.6612193, 0.6679340, 0.6745819, 0.6811649, 0.6876849, 0.6941437, 0.7005429, 0.7068842, 0.7131691, 0.7193991, 0.7255756, 0.7317000, 0.7347410, 0.7377695, 0.7407856, 0.7437894, 0.7467812, 0.7497610, 0.7527291, 0.7556855, 0.7586304, 0.7615638, 0.7644861, 0.7673972, 0.7702973, 0.7731865, 0.7760650, 0.7789328, 0.7817901, 0.7846370, 0.7874736, 0.7903000, 0.7931164};
+
+    public static final double MIN_LEVEL = 1;
+    public static final double LEVEL_STEP = 0.5;
+    public static final int MAX_TRAINER_LEVEL = 40;
+
+    private static final double[][] ANGLES = new double[MAX_TRAINER_LEVEL + 1][];
+
+    private LevelArc() {
+    }
+
+    public static double maxLevel(int trainerLevel) {
+        return trainerLevel + 1.5;
+    }
+
+    /**
+     * Number of half levels on the arc, from {@link #MIN_LEVEL} to {@link #maxLevel(int)}.
+     */
+    public static int levelCount(int trainerLevel) {
+        return round((maxLevel(trainerLevel) - MIN_LEVEL) / LEVEL_STEP) + 1;
+    }
+
+    public static double level(int index) {
+        return MIN_LEVEL + index * LEVEL_STEP;
+    }
+
+    /**
+     * Picks the level whose arc endpoint is deepest inside the white level marker, given the
+     * distances sampled per level, or -1 when no endpoint is white.
+     */
+    public static double pickLevel(int[] distances) {
+        int max = 0;
+        double estPokemonLevel = -1;
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] > max) {
+                max = distances[i];
+                estPokemonLevel = level(i);
+            }
+        }
+        return estPokemonLevel;
+    }
+
+    /**
+     * Level whose arc angle is closest to {@code angleRad}.
+     */
+    public static double closestLevel(int trainerLevel, double angleRad) {
+        double[] angles = angles(trainerLevel);
+        int best = 0;
+        for (int i = 1; i < angles.length; i++) {
+            if (Math.abs(angles[i] - angleRad) < Math.abs(angles[best] - angleRad)) {
+                best = i;
+            }
+        }
+        return level(best);
+    }
+
+    /**
+     * Arc angle of every half level, computed once per trainer level. The array is shared and
+     * must not be modified.
+     */
+    static synchronized double[] angles(int trainerLevel) {
+        if (trainerLevel < 0 || trainerLevel > MAX_TRAINER_LEVEL) {
+            return computeAngles(trainerLevel);
+        }
+        if (ANGLES[trainerLevel] == null) {
+            ANGLES[trainerLevel] = computeAngles(trainerLevel);
+        }
+        return ANGLES[trainerLevel];
+    }
+
+    private static double[] computeAngles(int trainerLevel) {
+        double[] angles = new double[levelCount(trainerLevel)];
+        for (int i = 0; i < angles.length; i++) {
+            angles[i] = angle(trainerLevel, level(i));
+        }
+        return angles;
+    }
+
+    public static double angle(int trainerLevel, double pokemonLevel) {
+        // Thanks to http://poke.isitin.org/ for the formula
+        double angleDeg = 180 - ((getCPM(pokemonLevel) - getCPM(MIN_LEVEL)) * 202.037116 / getCPM(trainerLevel));
+        return angleDeg / 180.0 * Math.PI;
+    }
+
+    public static double getCPM(double level) {
+        int idx = min(max(round(level * 2 - 2), 0), CPM.length - 1);
+        return CPM[idx];
+    }
+
+    private static int round(double v) {
+        return (int) Math.round(v);
+    }
+}
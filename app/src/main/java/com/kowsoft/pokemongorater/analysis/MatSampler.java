@@ -0,0 +1,68 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Reads a list of pixels of a single channel Mat into a float array with a fixed number of
+ * native calls, instead of one {@code Mat.get(row, col)} and one double[] per pixel. The
+ * coordinates are put into a 1 x N remap table, so OpenCV gathers the pixels itself and only
+ * the N sampled values are copied back. Buffers are kept for the next call; not thread-safe.
+ */
+public final class MatSampler {
+
+    private static final Scalar OUTSIDE = new Scalar(0);
+
+    private final Mat mapX = new Mat();
+    private final Mat mapY = new Mat();
+    private final Mat sampled = new Mat();
+    private final Mat sampledFloat = new Mat();
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+    private float[] values = new float[0];
+
+    /**
+     * Samples {@code mat} at ({@code xs[i] - offsetX}, {@code ys[i] - offsetY}); pixels
+     * outside of it read as 0. Returns an array reused by the next call.
+     */
+    public float[] sample(Mat mat, int[] xs, int[] ys, int offsetX, int offsetY) {
+        int count = xs.length;
+        if (this.xs.length != count) {
+            this.xs = new float[count];
+            this.ys = new float[count];
+            values = new float[count];
+        }
+        for (int i = 0; i < count; i++) {
+            this.xs[i] = xs[i] - offsetX;
+            this.ys[i] = ys[i] - offsetY;
+        }
+        long bytes = bytes();
+        mapX.create(1, count, CvType.CV_32FC1);
+        mapY.create(1, count, CvType.CV_32FC1);
+        mapX.put(0, 0, this.xs);
+        mapY.put(0, 0, this.ys);
+        Imgproc.remap(mat, sampled, mapX, mapY, Imgproc.INTER_NEAREST, Core.BORDER_CONSTANT, OUTSIDE);
+        Mat floats = sampled;
+        if (sampled.depth() != CvType.CV_32F) {
+            sampled.convertTo(sampledFloat, CvType.CV_32F);
+            floats = sampledFloat;
+        }
+        PipelineMetrics.addMatBytes(bytes() - bytes);
+        floats.get(0, 0, values);
+        return values;
+    }
+
+    public void release() {
+        for (Mat mat : new Mat[]{mapX, mapY, sampled, sampledFloat}) {
+            PipelineMetrics.matReleased(mat);
+            mat.release();
+        }
+    }
+
+    private long bytes() {
+        return PipelineMetrics.matBytes(mapX) + PipelineMetrics.matBytes(mapY) + PipelineMetrics.matBytes(sampled) + PipelineMetrics.matBytes(sampledFloat);
+    }
+}
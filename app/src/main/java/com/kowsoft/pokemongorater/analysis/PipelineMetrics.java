@@ -0,0 +1,183 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process wide latency and native memory metrics of the capture and analysis pipeline.
+ * Each stage keeps its last {@link #WINDOW} durations, {@link #report()} prints percentiles
+ * over them. Stages timed with {@link #begin}/{@link #end} are also reported to the
+ * {@link Tracer}, so they show up as trace sections.
+ */
+public final class PipelineMetrics {
+
+    public static final int WINDOW = 128;
+
+    public static final String OPENCV_LOAD = "opencv_load";
+    public static final String WARM_UP = "warm_up";
+    public static final String HIDE_DELAY = "hide_delay";
+    public static final String DISPLAY_CREATE = "display_create";
+    public static final String BURST_CAPTURE = "burst_capture";
+    public static final String FRAME_ACQUIRE = "frame_acquire";
+    public static final String FRAME_COPY = "frame_copy";
+    public static final String BITMAP_BUILD = "bitmap_build";
+    public static final String PNG_ENCODE = "png_encode";
+    public static final String PNG_DECODE = "png_decode";
+    public static final String BITMAP_TO_MAT = "bitmap_to_mat";
+    public static final String IMAGE_TO_MAT = "image_to_mat";
+    public static final String CVT_COLOR = "cvt_color";
+    public static final String GAUSSIAN_BLUR = "gaussian_blur";
+    public static final String FIND_CIRCLE = "find_circle";
+    public static final String THRESHOLD = "threshold";
+    public static final String DISTANCE_TRANSFORM = "distance_transform";
+    public static final String POLAR_UNWRAP = "polar_unwrap";
+    public static final String LEVEL_SAMPLING = "level_sampling";
+    public static final String DEBUG_RENDER = "debug_render";
+    public static final String MAT_TO_BITMAP = "mat_to_bitmap";
+    public static final String TAP_TO_RESULT = "tap_to_result";
+    public static final String LIVE_ANALYSIS = "live_analysis";
+    public static final String FRAME_SIGNATURE = "frame_signature";
+    public static final String CLASSIFY = "classify";
+
+    public interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+
+    private static final Map<String, Window> stages = new LinkedHashMap<>();
+    private static volatile Tracer tracer;
+    private static long liveMatBytes;
+    private static long peakMatBytes;
+
+    private PipelineMetrics() {
+    }
+
+    public static void setTracer(Tracer tracer) {
+        PipelineMetrics.tracer = tracer;
+    }
+
+    /**
+     * Starts timing a stage on the current thread. Pass the returned value to
+     * {@link #end(String, long)} on the same thread.
+     */
+    public static long begin(String stage) {
+        Tracer t = tracer;
+        if (t != null) {
+            t.beginSection(stage);
+        }
+        return System.nanoTime();
+    }
+
+    public static void end(String stage, long begin) {
+        long nanos = System.nanoTime() - begin;
+        Tracer t = tracer;
+        if (t != null) {
+            t.endSection();
+        }
+        record(stage, nanos);
+    }
+
+    /**
+     * Records a duration measured elsewhere, e.g. across threads. Not traced.
+     */
+    public static synchronized void record(String stage, long nanos) {
+        Window window = stages.get(stage);
+        if (window == null) {
+            window = new Window();
+            stages.put(stage, window);
+        }
+        window.add(nanos);
+    }
+
+    /**
+     * Adjusts the bytes held by live native Mats; negative when Mats are released.
+     */
+    public static synchronized void addMatBytes(long bytes) {
+        liveMatBytes += bytes;
+        peakMatBytes = Math.max(peakMatBytes, liveMatBytes);
+    }
+
+    public static void matAllocated(Mat mat) {
+        addMatBytes(matBytes(mat));
+    }
+
+    /**
+     * Counts what {@code mat} grew or shrank by since it held {@code bytesBefore}, e.g. after
+     * an OpenCV call that allocates its output on the first run only.
+     */
+    public static void matResized(Mat mat, long bytesBefore) {
+        addMatBytes(matBytes(mat) - bytesBefore);
+    }
+
+    /**
+     * Call before {@code mat.release()}, while its size is still known. Only for Mats that were
+     * counted with {@link #matAllocated} or {@link #matResized}.
+     */
+    public static void matReleased(Mat mat) {
+        addMatBytes(-matBytes(mat));
+    }
+
+    public static long matBytes(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+
+    public static synchronized long getLiveMatBytes() {
+        return liveMatBytes;
+    }
+
+    /**
+     * Percentile {@code p} (0..100) of the stage durations in the window, in nanoseconds,
+     * or -1 when the stage was not recorded yet.
+     */
+    public static synchronized long percentile(String stage, double p) {
+        Window window = stages.get(stage);
+        if (window == null) {
+            return -1;
+        }
+        return window.percentile(p);
+    }
+
+    public static synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-20s %6s %9s %9s %9s %9s%n", "stage [ms]", "count", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Window> entry : stages.entrySet()) {
+            Window window = entry.getValue();
+            sb.append(String.format(Locale.US, "%-20s %6d %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), window.count,
+                    millis(window.percentile(50)), millis(window.percentile(90)), millis(window.percentile(99)), millis(window.percentile(100))));
+        }
+        sb.append(String.format(Locale.US, "live Mat bytes: %d, peak: %d%n", liveMatBytes, peakMatBytes));
+        return sb.toString();
+    }
+
+    public static synchronized void reset() {
+        stages.clear();
+        peakMatBytes = liveMatBytes;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static class Window {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+
+        void add(long nanos) {
+            samples[count % WINDOW] = nanos;
+            count++;
+        }
+
+        long percentile(double p) {
+            int size = Math.min(count, WINDOW);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p / 100 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
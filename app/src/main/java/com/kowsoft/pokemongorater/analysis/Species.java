@@ -0,0 +1,185 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * The 151 Pokémon of the game with their base attack, defense and stamina, as in the 2016 game
+ * master. Declared in Pokédex order, see {@link #getNumber()}.
+ */
+public enum Species {
+    BULBASAUR(126, 126, 90),
+    IVYSAUR(156, 158, 120),
+    VENUSAUR(198, 200, 160),
+    CHARMANDER(128, 108, 78),
+    CHARMELEON(160, 140, 116),
+    CHARIZARD(212, 182, 156),
+    SQUIRTLE(112, 142, 88),
+    WARTORTLE(144, 176, 118),
+    BLASTOISE(186, 222, 158),
+    CATERPIE(62, 66, 90),
+    METAPOD(56, 86, 100),
+    BUTTERFREE(144, 144, 120),
+    WEEDLE(68, 64, 80),
+    KAKUNA(62, 82, 90),
+    BEEDRILL(144, 130, 130),
+    PIDGEY(94, 90, 80),
+    PIDGEOTTO(126, 122, 126),
+    PIDGEOT(170, 166, 166),
+    RATTATA(92, 86, 60),
+    RATICATE(146, 150, 110),
+    SPEAROW(102, 78, 80),
+    FEAROW(168, 146, 130),
+    EKANS(112, 112, 70),
+    ARBOK(166, 166, 120),
+    PIKACHU(124, 108, 70),
+    RAICHU(200, 154, 120),
+    SANDSHREW(90, 114, 100),
+    SANDSLASH(150, 172, 150),
+    NIDORAN_FEMALE(100, 104, 110),
+    NIDORINA(132, 136, 140),
+    NIDOQUEEN(184, 190, 180),
+    NIDORAN_MALE(110, 94, 92),
+    NIDORINO(142, 128, 122),
+    NIDOKING(204, 170, 162),
+    CLEFAIRY(116, 124, 140),
+    CLEFABLE(178, 178, 190),
+    VULPIX(106, 118, 76),
+    NINETALES(176, 194, 146),
+    JIGGLYPUFF(98, 54, 230),
+    WIGGLYTUFF(168, 108, 280),
+    ZUBAT(88, 90, 80),
+    GOLBAT(164, 164, 150),
+    ODDISH(134, 130, 90),
+    GLOOM(162, 158, 120),
+    VILEPLUME(202, 190, 150),
+    PARAS(122, 120, 70),
+    PARASECT(162, 170, 120),
+    VENONAT(108, 118, 120),
+    VENOMOTH(172, 154, 140),
+    DIGLETT(108, 86, 20),
+    DUGTRIO(148, 140, 70),
+    MEOWTH(104, 94, 80),
+    PERSIAN(156, 146, 130),
+    PSYDUCK(132, 112, 100),
+    GOLDUCK(194, 176, 160),
+    MANKEY(122, 96, 80),
+    PRIMEAPE(178, 150, 130),
+    GROWLITHE(156, 110, 110),
+    ARCANINE(230, 180, 180),
+    POLIWAG(108, 98, 80),
+    POLIWHIRL(132, 132, 130),
+    POLIWRATH(180, 202, 180),
+    ABRA(110, 76, 50),
+    KADABRA(150, 112, 80),
+    ALAKAZAM(186, 152, 110),
+    MACHOP(118, 96, 140),
+    MACHOKE(154, 144, 160),
+    MACHAMP(198, 180, 180),
+    BELLSPROUT(158, 78, 100),
+    WEEPINBELL(190, 110, 130),
+    VICTREEBEL(222, 152, 160),
+    TENTACOOL(106, 136, 80),
+    TENTACRUEL(170, 196, 160),
+    GEODUDE(106, 118, 80),
+    GRAVELER(142, 156, 110),
+    GOLEM(176, 198, 160),
+    PONYTA(168, 138, 100),
+    RAPIDASH(200, 170, 130),
+    SLOWPOKE(110, 110, 180),
+    SLOWBRO(184, 198, 190),
+    MAGNEMITE(128, 138, 50),
+    MAGNETON(186, 180, 100),
+    FARFETCHD(138, 132, 104),
+    DODUO(126, 96, 70),
+    DODRIO(182, 150, 120),
+    SEEL(104, 138, 130),
+    DEWGONG(156, 192, 180),
+    GRIMER(124, 110, 160),
+    MUK(180, 188, 210),
+    SHELLDER(120, 112, 60),
+    CLOYSTER(196, 196, 100),
+    GASTLY(136, 82, 60),
+    HAUNTER(172, 118, 90),
+    GENGAR(204, 156, 120),
+    ONIX(90, 186, 70),
+    DROWZEE(104, 140, 120),
+    HYPNO(162, 196, 170),
+    KRABBY(116, 110, 60),
+    KINGLER(178, 168, 110),
+    VOLTORB(102, 124, 80),
+    ELECTRODE(150, 174, 120),
+    EXEGGCUTE(110, 132, 120),
+    EXEGGUTOR(232, 164, 190),
+    CUBONE(102, 150, 100),
+    MAROWAK(140, 202, 120),
+    HITMONLEE(148, 172, 100),
+    HITMONCHAN(138, 204, 100),
+    LICKITUNG(126, 160, 180),
+    KOFFING(136, 142, 80),
+    WEEZING(190, 198, 130),
+    RHYHORN(110, 116, 160),
+    RHYDON(166, 160, 210),
+    CHANSEY(40, 60, 500),
+    TANGELA(164, 152, 130),
+    KANGASKHAN(142, 178, 210),
+    HORSEA(122, 100, 60),
+    SEADRA(176, 150, 110),
+    GOLDEEN(112, 126, 90),
+    SEAKING(172, 160, 160),
+    STARYU(130, 128, 60),
+    STARMIE(194, 192, 120),
+    MR_MIME(154, 196, 80),
+    SCYTHER(176, 180, 140),
+    JYNX(172, 134, 130),
+    ELECTABUZZ(198, 160, 130),
+    MAGMAR(214, 158, 130),
+    PINSIR(184, 186, 130),
+    TAUROS(148, 184, 150),
+    MAGIKARP(42, 84, 40),
+    GYARADOS(192, 196, 190),
+    LAPRAS(186, 190, 260),
+    DITTO(110, 110, 96),
+    EEVEE(114, 128, 110),
+    VAPOREON(186, 168, 260),
+    JOLTEON(192, 174, 130),
+    FLAREON(238, 178, 130),
+    PORYGON(156, 158, 130),
+    OMANYTE(132, 160, 70),
+    OMASTAR(180, 202, 140),
+    KABUTO(148, 142, 60),
+    KABUTOPS(190, 190, 120),
+    AERODACTYL(182, 162, 160),
+    SNORLAX(180, 180, 320),
+    ARTICUNO(198, 242, 180),
+    ZAPDOS(232, 194, 180),
+    MOLTRES(242, 194, 180),
+    DRATINI(128, 110, 82),
+    DRAGONAIR(170, 152, 122),
+    DRAGONITE(250, 212, 182),
+    MEWTWO(284, 202, 212),
+    MEW(220, 220, 200);
+
+    private final int baseAttack;
+    private final int baseDefense;
+    private final int baseStamina;
+
+    Species(int baseAttack, int baseDefense, int baseStamina) {
+        this.baseAttack = baseAttack;
+        this.baseDefense = baseDefense;
+        this.baseStamina = baseStamina;
+    }
+
+    public int getNumber() {
+        return ordinal() + 1;
+    }
+
+    public int getBaseAttack() {
+        return baseAttack;
+    }
+
+    public int getBaseDefense() {
+        return baseDefense;
+    }
+
+    public int getBaseStamina() {
+        return baseStamina;
+    }
+}
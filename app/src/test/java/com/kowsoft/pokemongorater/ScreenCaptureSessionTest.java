@@ -0,0 +1,41 @@
+package com.kowsoft.pokemongorater;
+
+import android.media.Image;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ScreenCaptureSessionTest {
+
+    @Test
+    public void everyListenerReadsTheWholeFrame() {
+        byte[] pixels = {1, 2, 3, 4, 5, 6, 7, 8};
+        Image.Plane plane = mock(Image.Plane.class);
+        when(plane.getBuffer()).thenReturn(ByteBuffer.wrap(pixels));
+        Image image = mock(Image.class);
+        when(image.getPlanes()).thenReturn(new Image.Plane[]{plane});
+
+        final List<byte[]> reads = new ArrayList<>();
+        ScreenCaptureSession.FrameListener consumer = new ScreenCaptureSession.FrameListener() {
+            @Override
+            public void onFrame(Image image) {
+                byte[] read = new byte[8];
+                image.getPlanes()[0].getBuffer().get(read);
+                reads.add(read);
+            }
+        };
+        ScreenCaptureSession.deliver(image, Arrays.asList(consumer, consumer));
+
+        assertEquals(2, reads.size());
+        assertEquals(Arrays.toString(pixels), Arrays.toString(reads.get(0)));
+        assertEquals(Arrays.toString(pixels), Arrays.toString(reads.get(1)));
+    }
+}
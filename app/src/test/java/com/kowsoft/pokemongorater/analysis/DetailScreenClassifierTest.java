@@ -0,0 +1,97 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetailScreenClassifierTest {
+
+    @Test
+    public void acceptsDetailScreens() {
+        for (int[] size : new int[][]{{720, 1280}, {1080, 1920}, {1440, 2560}, {1080, 2160}, {480, 800}}) {
+            SyntheticScreen screen = new SyntheticScreen(size[0], size[1], SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL);
+            assertDetailScreen(size[0] + "x" + size[1], true, screen.argb(), size[0], size[1]);
+        }
+    }
+
+    @Test
+    public void acceptsNightBackground() {
+        int[] argb = detailScreen(1080, 1920).argb();
+        for (int i = 0; i < argb.length; i++) {
+            if (argb[i] != 0xffffffff && argb[i] != 0xfff0f0f0) {
+                argb[i] = 0xff182848;
+            }
+        }
+        assertDetailScreen("night", true, argb, 1080, 1920);
+    }
+
+    @Test
+    public void acceptsRowPadding() {
+        SyntheticScreen screen = detailScreen(720, 1280);
+        int rowStride = 736 * 4;
+        byte[] rgba = screen.rgba();
+        byte[] padded = new byte[rowStride * 1280];
+        for (int y = 0; y < 1280; y++) {
+            System.arraycopy(rgba, y * 720 * 4, padded, y * rowStride, 720 * 4);
+        }
+        assertTrue(DetailScreenClassifier.isDetailScreen(ByteBuffer.wrap(padded), 720, 1280, rowStride, 4));
+    }
+
+    @Test
+    public void rejectsUniformScreens() {
+        assertDetailScreen("white", false, filled(0xffffffff), 720, 1280);
+        assertDetailScreen("black", false, filled(0xff000000), 720, 1280);
+        // the map: green and gray all over
+        assertDetailScreen("map", false, filled(0xff60a060), 720, 1280);
+    }
+
+    @Test
+    public void rejectsWhiteTopHalf() {
+        // lists like the bag or the Pokémon storage are white from the top
+        int[] argb = detailScreen(720, 1280).argb();
+        Arrays.fill(argb, 0, 720 * 640, 0xfff0f0f0);
+        assertDetailScreen("white top", false, argb, 720, 1280);
+    }
+
+    @Test
+    public void rejectsMissingCard() {
+        int[] argb = detailScreen(720, 1280).argb();
+        Arrays.fill(argb, 720 * 640, argb.length, 0xff5078a0);
+        assertDetailScreen("no card", false, argb, 720, 1280);
+    }
+
+    @Test
+    public void rejectsCardTooLow() {
+        int[] argb = detailScreen(720, 1280).argb();
+        // the card starts at 55 % of the height, move it below 70 %
+        Arrays.fill(argb, 720 * 640, 720 * 960, 0xff5078a0);
+        assertDetailScreen("card too low", false, argb, 720, 1280);
+    }
+
+    private static void assertDetailScreen(String name, boolean expected, int[] argb, int width, int height) {
+        byte[] rgba = new byte[argb.length * 4];
+        for (int i = 0; i < argb.length; i++) {
+            rgba[i * 4] = (byte) (argb[i] >> 16);
+            rgba[i * 4 + 1] = (byte) (argb[i] >> 8);
+            rgba[i * 4 + 2] = (byte) argb[i];
+            rgba[i * 4 + 3] = (byte) (argb[i] >> 24);
+        }
+        // both layouts must agree
+        assertTrue(name + " argb", expected == DetailScreenClassifier.isDetailScreen(argb, width, height, width));
+        assertTrue(name + " rgba", expected == DetailScreenClassifier.isDetailScreen(ByteBuffer.wrap(rgba), width, height, width * 4, 4));
+    }
+
+    private static SyntheticScreen detailScreen(int width, int height) {
+        return new SyntheticScreen(width, height, SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL);
+    }
+
+    private static int[] filled(int color) {
+        int[] argb = new int[720 * 1280];
+        Arrays.fill(argb, color);
+        return argb;
+    }
+}
@@ -0,0 +1,64 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSignatureTest {
+
+    @Test
+    public void halfLevelMoveChangesSignature() {
+        assertEveryHalfLevelChanges(720, 1280, 30);
+        assertEveryHalfLevelChanges(1080, 1920, 30);
+        // the closest half levels on the arc, under a degree apart
+        assertEveryHalfLevelChanges(720, 1280, 40);
+    }
+
+    @Test
+    public void sameScreenKeepsSignature() {
+        GrayFrame frame = gray(new SyntheticScreen(1080, 1920, SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL));
+        FrameSignature signature = sign(frame, SyntheticScreen.TRAINER_LEVEL);
+        assertTrue(signature.isCloseTo(signature.of(gray(new SyntheticScreen(1080, 1920, SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL)))));
+    }
+
+    @Test
+    public void otherScreenSizeIsNotClose() {
+        FrameSignature signature = sign(gray(new SyntheticScreen(720, 1280, SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL)), SyntheticScreen.TRAINER_LEVEL);
+        assertFalse(signature.isCloseTo(signature.of(gray(new SyntheticScreen(720, 1440, SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL)))));
+    }
+
+    @Test
+    public void noSignatureWithoutArc() {
+        assertNull(FrameSignature.ofGray(new GrayFrame(), ArcAnalysis.invalid()));
+    }
+
+    private static void assertEveryHalfLevelChanges(int width, int height, int trainerLevel) {
+        for (int i = 0; i + 1 < LevelArc.levelCount(trainerLevel); i++) {
+            double level = LevelArc.level(i);
+            if (LevelArc.angle(trainerLevel, level) == LevelArc.angle(trainerLevel, LevelArc.level(i + 1))) {
+                // the multiplier table ends at level 40.5, higher levels share its angle
+                continue;
+            }
+            FrameSignature signature = sign(gray(new SyntheticScreen(width, height, trainerLevel, level)), trainerLevel);
+            FrameSignature moved = signature.of(gray(new SyntheticScreen(width, height, trainerLevel, LevelArc.level(i + 1))));
+            assertFalse(width + "x" + height + " trainer level " + trainerLevel + " level " + level, signature.isCloseTo(moved));
+        }
+    }
+
+    private static FrameSignature sign(GrayFrame frame, int trainerLevel) {
+        FrameSignature signature = FrameSignature.ofGray(frame, new JavaArcEngine(trainerLevel).analyzeGray(frame));
+        assertNotNull(signature);
+        return signature;
+    }
+
+    private static GrayFrame gray(SyntheticScreen screen) {
+        GrayFrame frame = new GrayFrame();
+        frame.copyRgba(ByteBuffer.wrap(screen.rgba()), screen.getWidth(), screen.getHeight(), screen.getWidth() * 4, 4);
+        return frame;
+    }
+}
@@ -0,0 +1,54 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IvCalculatorTest {
+
+    // 15/15/15 at level 40, as published for the 2016 release
+    @Test
+    public void perfectPokemonAtMaxLevelHasKnownCp() {
+        assertPerfect(Species.DRAGONITE, 3500, 155);
+        assertPerfect(Species.MEWTWO, 4144, 179);
+        assertPerfect(Species.CHARIZARD, 2602, 135);
+        assertPerfect(Species.BULBASAUR, 1071, 82);
+        assertPerfect(Species.SNORLAX, 3112, 264);
+        assertPerfect(Species.PIDGEY, 679, 75);
+    }
+
+    @Test
+    public void findsCombinationOfLevel20Dragonite() {
+        IvRange range = IvCalculator.calculate(Species.DRAGONITE, 1899, 111, 20);
+        boolean found = false;
+        for (IvCombination combination : range.getCombinations()) {
+            assertEquals(20, combination.getLevel(), 0);
+            found |= combination.getAttack() == 10 && combination.getDefense() == 12 && combination.getStamina() == 5;
+        }
+        assertTrue("10/12/5 among " + range.getCombinations(), found);
+    }
+
+    @Test
+    public void levelRangeChecksEveryHalfLevel() {
+        IvRange range = IvCalculator.calculate(Species.DRAGONITE, 1899, 111, 19, 21);
+        boolean atLevel20 = false;
+        for (IvCombination combination : range.getCombinations()) {
+            assertTrue(combination.getLevel() >= 19 && combination.getLevel() <= 21);
+            atLevel20 |= combination.getLevel() == 20;
+        }
+        assertTrue(atLevel20);
+    }
+
+    @Test
+    public void impossibleCpMatchesNothing() {
+        IvRange range = IvCalculator.calculate(Species.MAGIKARP, 3000, 100, 1, IvCalculator.MAX_LEVEL);
+        assertTrue(range.isEmpty());
+        assertTrue(Double.isNaN(range.getMaxPercent()));
+    }
+
+    private static void assertPerfect(Species species, int cp, int hp) {
+        IvRange range = IvCalculator.calculate(species, cp, hp, IvCalculator.MAX_LEVEL);
+        assertEquals(species + " at max CP", 100, range.getMaxPercent(), 1e-9);
+    }
+}
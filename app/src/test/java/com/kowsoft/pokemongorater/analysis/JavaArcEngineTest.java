@@ -0,0 +1,45 @@
+package com.kowsoft.pokemongorater.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JavaArcEngineTest {
+
+    @Test
+    public void readsEveryLevelAt720p() {
+        assertEveryLevel(720, 1280);
+    }
+
+    @Test
+    public void readsEveryLevelAt1080p() {
+        assertEveryLevel(1080, 1920);
+    }
+
+    @Test
+    public void readsEveryLevelAt1440p() {
+        assertEveryLevel(1440, 2560);
+    }
+
+    @Test
+    public void findsCircleWithinAPixel() {
+        SyntheticScreen screen = new SyntheticScreen(1080, 1920, SyntheticScreen.TRAINER_LEVEL, SyntheticScreen.POKEMON_LEVEL);
+        ArcAnalysis analysis = new JavaArcEngine(SyntheticScreen.TRAINER_LEVEL).analyzeArgb(screen.argb(), 0, 1080, 1920, 1080);
+        assertTrue(analysis.isValid());
+        assertEquals(540, analysis.getCenterX(), 1);
+        assertEquals(630, analysis.getCenterY(), 1);
+        assertEquals(405, analysis.getRadius(), 1);
+    }
+
+    private static void assertEveryLevel(int width, int height) {
+        int trainerLevel = SyntheticScreen.TRAINER_LEVEL;
+        JavaArcEngine engine = new JavaArcEngine(trainerLevel);
+        for (int i = 0; i < LevelArc.levelCount(trainerLevel); i++) {
+            double level = LevelArc.level(i);
+            SyntheticScreen screen = new SyntheticScreen(width, height, trainerLevel, level);
+            ArcAnalysis analysis = engine.analyzeArgb(screen.argb(), 0, width, height, width);
+            assertEquals(width + "x" + height + " level " + level, level, analysis.getLevel(), 0);
+        }
+    }
+}
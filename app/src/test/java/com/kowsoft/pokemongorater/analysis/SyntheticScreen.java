@@ -0,0 +1,81 @@
+package com.kowsoft.pokemongorater.analysis;
+
+/**
+ * Generates a Pokémon detail screen lookalike: gradient background, white level arc with the
+ * level marker, and the white info card on the lower part of the screen. Shared by the unit
+ * tests and the benchmark module.
+ */
+public class SyntheticScreen {
+
+    public static final int TRAINER_LEVEL = 30;
+    public static final double POKEMON_LEVEL = 20;
+
+    private final int width;
+    private final int height;
+    private final int[] argb;
+
+    public SyntheticScreen(int width, int height, int trainerLevel, double pokemonLevel) {
+        this.width = width;
+        this.height = height;
+        this.argb = new int[width * height];
+
+        double scale = width / 720.0;
+        double cx = width / 2.0;
+        double cy = 420 * scale;
+        double radius = 270 * scale;
+        double lineWidth = 4 * scale;
+        double markerRadius = 10 * scale;
+        double angle = LevelArc.angle(trainerLevel, pokemonLevel);
+        double markerX = cx + radius * Math.cos(angle);
+        double markerY = cy - radius * Math.sin(angle);
+
+        for (int y = 0; y < height; y++) {
+            int bg = 80 + 60 * y / height;
+            for (int x = 0; x < width; x++) {
+                int color = (bg << 16) | ((bg + 40) << 8) | (bg + 60);
+                double dist = Math.hypot(x - cx, y - cy);
+                if (y > height * 0.55) {
+                    color = 0xf0f0f0;
+                }
+                if ((Math.abs(dist - radius) < lineWidth / 2 && y <= cy) || Math.hypot(x - markerX, y - markerY) < markerRadius) {
+                    color = 0xffffff;
+                }
+                argb[y * width + x] = 0xff000000 | color;
+            }
+        }
+    }
+
+    /**
+     * Parses a "720x1280" style resolution.
+     */
+    public static SyntheticScreen of(String resolution) {
+        String[] size = resolution.split("x");
+        return new SyntheticScreen(Integer.parseInt(size[0]), Integer.parseInt(size[1]), TRAINER_LEVEL, POKEMON_LEVEL);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] argb() {
+        return argb;
+    }
+
+    /**
+     * Same pixels as RGBA bytes, like an ImageReader plane without row padding.
+     */
+    public byte[] rgba() {
+        byte[] rgba = new byte[argb.length * 4];
+        for (int i = 0; i < argb.length; i++) {
+            rgba[i * 4] = (byte) (argb[i] >> 16);
+            rgba[i * 4 + 1] = (byte) (argb[i] >> 8);
+            rgba[i * 4 + 2] = (byte) argb[i];
+            rgba[i * 4 + 3] = (byte) (argb[i] >> 24);
+        }
+        return rgba;
+    }
+}
@@ -0,0 +1,57 @@
+package com.kowsoft.pokemongorater.benchmark;
+
+import com.kowsoft.pokemongorater.analysis.IvCalculator;
+import com.kowsoft.pokemongorater.analysis.IvRange;
+import com.kowsoft.pokemongorater.analysis.LevelArc;
+import com.kowsoft.pokemongorater.analysis.Species;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IV lookups of a level 20 Dragonite once its table is built, at the level read from the arc
+ * and over every level. No native library needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class IvCalculatorBenchmark {
+
+    private static final Species SPECIES = Species.DRAGONITE;
+    private static final double LEVEL = 20;
+
+    private int cp;
+    private int hp;
+
+    @Setup
+    public void setUp() {
+        double cpm = LevelArc.getCPM(LEVEL);
+        double stamina = SPECIES.getBaseStamina() + 5;
+        cp = (int) ((SPECIES.getBaseAttack() + 10) * Math.sqrt(SPECIES.getBaseDefense() + 12) * Math.sqrt(stamina) * cpm * cpm / 10);
+        hp = (int) (stamina * cpm);
+        IvCalculator.calculate(SPECIES, cp, hp, LEVEL);
+    }
+
+    @Benchmark
+    public IvRange atLevel() {
+        return IvCalculator.calculate(SPECIES, cp, hp, LEVEL);
+    }
+
+    @Benchmark
+    public IvRange allLevels() {
+        return IvCalculator.calculate(SPECIES, cp, hp, LevelArc.MIN_LEVEL, IvCalculator.MAX_LEVEL);
+    }
+}
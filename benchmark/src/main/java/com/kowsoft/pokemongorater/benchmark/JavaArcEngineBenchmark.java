@@ -0,0 +1,99 @@
+package com.kowsoft.pokemongorater.benchmark;
+
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.DetailScreenClassifier;
+import com.kowsoft.pokemongorater.analysis.FrameSignature;
+import com.kowsoft.pokemongorater.analysis.GrayFrame;
+import com.kowsoft.pokemongorater.analysis.JavaArcEngine;
+import com.kowsoft.pokemongorater.analysis.SyntheticScreen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end latency of the OpenCV free engine, and of the detail screen classifier and the
+ * frame signature that let the live rater skip it. No native library needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class JavaArcEngineBenchmark {
+
+    @Param({"720x1280", "1080x1920", "1440x2560"})
+    public String resolution;
+
+    private SyntheticScreen screen;
+    private byte[] rgba;
+    private ByteBuffer rgbaBuffer;
+    private JavaArcEngine engine;
+    private GrayFrame grayFrame;
+    private FrameSignature signature;
+
+    @Setup
+    public void setUp() {
+        screen = SyntheticScreen.of(resolution);
+        rgba = screen.rgba();
+        rgbaBuffer = ByteBuffer.allocateDirect(rgba.length);
+        rgbaBuffer.put(rgba);
+        engine = new JavaArcEngine(SyntheticScreen.TRAINER_LEVEL);
+        grayFrame = new GrayFrame();
+        grayFrame.copyRgba(rgbaBuffer, screen.getWidth(), screen.getHeight(), screen.getWidth() * 4, 4);
+        signature = FrameSignature.ofGray(grayFrame, engine.analyzeGray(grayFrame));
+    }
+
+    @Benchmark
+    public ArcAnalysis analyzeArgb() {
+        return engine.analyzeArgb(screen.argb(), 0, screen.getWidth(), screen.getHeight(), screen.getWidth());
+    }
+
+    @Benchmark
+    public ArcAnalysis analyzeRgba() {
+        return engine.analyzeRgba(rgba, 0, screen.getWidth(), screen.getHeight(), screen.getWidth() * 4, 4);
+    }
+
+    // What the live rater copies out of the plane instead of the RGBA top half
+    @Benchmark
+    public GrayFrame grayFrameCopy() {
+        grayFrame.copyRgba(rgbaBuffer, screen.getWidth(), screen.getHeight(), screen.getWidth() * 4, 4);
+        return grayFrame;
+    }
+
+    // Each further frame of a tap burst
+    @Benchmark
+    public GrayFrame grayFrameMax() {
+        grayFrame.maxRgba(rgbaBuffer, screen.getWidth(), screen.getHeight(), screen.getWidth() * 4, 4);
+        return grayFrame;
+    }
+
+    @Benchmark
+    public ArcAnalysis analyzeGray() {
+        return engine.analyzeGray(grayFrame);
+    }
+
+    // What the live rater pays per unchanged frame
+    @Benchmark
+    public FrameSignature frameSignature() {
+        return signature.of(grayFrame);
+    }
+
+    // ImageReader planes are direct buffers
+    @Benchmark
+    public boolean detailScreenClassifier() {
+        return DetailScreenClassifier.isDetailScreen(rgbaBuffer, screen.getWidth(), screen.getHeight(), screen.getWidth() * 4, 4);
+    }
+}
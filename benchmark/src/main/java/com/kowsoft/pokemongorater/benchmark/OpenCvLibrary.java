@@ -0,0 +1,19 @@
+package com.kowsoft.pokemongorater.benchmark;
+
+public final class OpenCvLibrary {
+
+    private static boolean loaded;
+
+    private OpenCvLibrary() {
+    }
+
+    /**
+     * Loads the desktop OpenCV Java library, by default libopencv_java310 from java.library.path.
+     */
+    public static synchronized void load() {
+        if (!loaded) {
+            System.loadLibrary(System.getProperty("opencv.library", "opencv_java310"));
+            loaded = true;
+        }
+    }
+}
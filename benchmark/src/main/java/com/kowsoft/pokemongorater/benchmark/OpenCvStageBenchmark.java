@@ -0,0 +1,239 @@
+package com.kowsoft.pokemongorater.benchmark;
+
+import com.kowsoft.pokemongorater.analysis.ArcAnalysis;
+import com.kowsoft.pokemongorater.analysis.ArcCalibration;
+import com.kowsoft.pokemongorater.analysis.ArcCircle;
+import com.kowsoft.pokemongorater.analysis.ArcGeometry;
+import com.kowsoft.pokemongorater.analysis.ArcMatAnalyzer;
+import com.kowsoft.pokemongorater.analysis.ArcPipeline;
+import com.kowsoft.pokemongorater.analysis.ArcPolarProfile;
+import com.kowsoft.pokemongorater.analysis.ArcSession;
+import com.kowsoft.pokemongorater.analysis.MatSampler;
+import com.kowsoft.pokemongorater.analysis.SyntheticScreen;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point3;
+import org.opencv.core.Rect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end and per stage latency of the OpenCV analysis. Each stage runs on the output of
+ * the previous ones, computed once in setup. Run with -prof gc for the Java allocation rate;
+ * native Mat memory is not visible to that profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenCvStageBenchmark {
+
+    @Param({"720x1280", "1080x1920", "1440x2560"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private byte[] rgba;
+    private byte[] debugPixels;
+    private ArcMatAnalyzer analyzer;
+    private ArcMatAnalyzer calibratedAnalyzer;
+    private ArcCircle arcCircle;
+    private ArcAnalysis analysis;
+    private Rect arcRoi;
+    private ArcPipeline pipeline;
+    private ArcPolarProfile polarProfile;
+    private ArcGeometry geometry;
+    private MatSampler sampler;
+    private int relevelTrainerLevel;
+
+    private Mat screen;
+    private Mat top;
+    private Mat gray;
+    private Mat blurred;
+    private Mat thresh;
+    private Mat threshDist;
+    private Mat scratch;
+    private Mat scratchDist;
+    private Mat debug;
+    private Mat canvas;
+
+    @Setup
+    public void setUp() {
+        OpenCvLibrary.load();
+        SyntheticScreen synthetic = SyntheticScreen.of(resolution);
+        width = synthetic.getWidth();
+        height = synthetic.getHeight();
+        rgba = synthetic.rgba();
+        analyzer = new ArcMatAnalyzer(SyntheticScreen.TRAINER_LEVEL);
+
+        screen = new Mat(height, width, CvType.CV_8UC4);
+        screen.put(0, 0, rgba);
+        top = ArcMatAnalyzer.topHalf(screen);
+        gray = new Mat();
+        ArcMatAnalyzer.toGray(top, gray);
+        blurred = gray.clone();
+        ArcMatAnalyzer.blur(blurred);
+
+        Point3 circle = ArcMatAnalyzer.findArcCircle(blurred, width, height);
+        if (circle == null) {
+            throw new IllegalStateException("No arc found in synthetic " + resolution + " screen");
+        }
+        arcRoi = ArcMatAnalyzer.arcRoi(circle, blurred.cols(), blurred.rows());
+        arcCircle = new ArcCircle(circle.x, circle.y, circle.z);
+        ArcCalibration calibration = new ArcCalibration(width, height, 0);
+        for (int i = 0; i < ArcCalibration.REQUIRED_DETECTIONS; i++) {
+            calibration.record(arcCircle);
+        }
+        calibratedAnalyzer = new ArcMatAnalyzer(SyntheticScreen.TRAINER_LEVEL, calibration);
+        thresh = new Mat();
+        threshDist = new Mat();
+        ArcMatAnalyzer.threshold(blurred, thresh);
+        ArcMatAnalyzer.distanceTransform(thresh, threshDist);
+        analysis = analyzer.analyze(screen);
+
+        scratch = gray.clone();
+        scratchDist = new Mat();
+        debug = new Mat();
+        canvas = top.clone();
+        pipeline = new ArcPipeline(screen, calibration);
+        pipeline.analyze(SyntheticScreen.TRAINER_LEVEL);
+        relevelTrainerLevel = SyntheticScreen.TRAINER_LEVEL;
+        polarProfile = new ArcPolarProfile(circle);
+        geometry = ArcGeometry.of(SyntheticScreen.TRAINER_LEVEL, circle.x, circle.y, analysis.getRadius());
+        sampler = new MatSampler();
+        debugPixels = new byte[width * (height / 2) * 2 * 4];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.release();
+        polarProfile.release();
+        sampler.release();
+        ArcSession.releasePooled();
+        for (Mat mat : new Mat[]{screen, top, gray, blurred, thresh, threshDist, scratch, scratchDist, debug, canvas}) {
+            mat.release();
+        }
+    }
+
+    // Desktop stand-in for Utils.bitmapToMat: one copy of the RGBA pixels into native memory
+    @Benchmark
+    public Mat rgbaToMat() {
+        screen.put(0, 0, rgba);
+        return screen;
+    }
+
+    @Benchmark
+    public Mat cvtColor() {
+        ArcMatAnalyzer.toGray(top, scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Mat gaussianBlur() {
+        ArcMatAnalyzer.blur(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Point3 houghCircles() {
+        return ArcMatAnalyzer.findArcCircle(blurred, width, height);
+    }
+
+    @Benchmark
+    public Point3 pyramidHoughCircles() {
+        return ArcMatAnalyzer.findArcCirclePyramid(blurred, width, height);
+    }
+
+    @Benchmark
+    public boolean calibrationCheck() {
+        return ArcMatAnalyzer.fitsArc(blurred, arcCircle);
+    }
+
+    @Benchmark
+    public Mat thresholdDistanceTransform() {
+        ArcMatAnalyzer.threshold(blurred, scratch);
+        ArcMatAnalyzer.distanceTransform(scratch, scratchDist);
+        return scratchDist;
+    }
+
+    // What the pipeline does: only the box around the arc
+    @Benchmark
+    public Mat roiThresholdDistanceTransform() {
+        try (Mat roi = blurred.submat(arcRoi)) {
+            ArcMatAnalyzer.threshold(roi, scratch);
+            ArcMatAnalyzer.distanceTransform(scratch, scratchDist);
+        }
+        return scratchDist;
+    }
+
+    @Benchmark
+    public int[] levelSampling() {
+        return ArcMatAnalyzer.sampleLevels(threshDist, geometry, 0, 0, sampler);
+    }
+
+    // Alternative to threshold, distance transform and sampling: remap the arc band and read the peak
+    @Benchmark
+    public ArcAnalysis polarProfile() {
+        polarProfile.unwrap(blurred);
+        return polarProfile.analyze(SyntheticScreen.TRAINER_LEVEL);
+    }
+
+    // Debug drawing and vconcat, plus the pixel read back that Utils.matToBitmap does on device
+    @Benchmark
+    public byte[] debugRender() {
+        ArcMatAnalyzer.renderDebug(canvas, analysis, thresh, 1, debug);
+        debug.get(0, 0, debugPixels);
+        return debugPixels;
+    }
+
+    // What the analysis activity renders on request: the debug image at half size
+    @Benchmark
+    public Mat debugRenderDownscaled() {
+        pipeline.renderDebug(analysis, 2, debug);
+        return debug;
+    }
+
+    // Steady state: the analyzer reuses a pooled session's Mats
+    @Benchmark
+    public ArcAnalysis fullPipeline() {
+        return analyzer.analyze(screen);
+    }
+
+    // Every intermediate Mat allocated and released again, like before sessions were pooled
+    @Benchmark
+    public ArcAnalysis freshPipeline() {
+        ArcPipeline fresh = new ArcPipeline(screen, null);
+        try {
+            return fresh.analyze(SyntheticScreen.TRAINER_LEVEL);
+        } finally {
+            fresh.release();
+        }
+    }
+
+    @Benchmark
+    public ArcAnalysis calibratedPipeline() {
+        return calibratedAnalyzer.analyze(screen);
+    }
+
+    // Trainer level change on an already analyzed screen: only the level sampling runs again
+    @Benchmark
+    public ArcAnalysis relevelPipeline() {
+        relevelTrainerLevel = relevelTrainerLevel % 40 + 1;
+        return pipeline.analyze(relevelTrainerLevel);
+    }
+}
@@ -2,15 +2,30 @@ package org.opencv.core;
 
 // C++: class Mat
 //javadoc: Mat
-public class Mat {
+/**
+ * The native data of a Mat is freed by {@link #release()} or {@link #close()}, so a Mat can be
+ * used with try-with-resources. The small native header is freed once the Mat becomes
+ * unreachable, without a finalizer, see {@link #cleanUp()}. With a {@link LeakListener} set,
+ * Mats that become unreachable while still holding data are reported.
+ */
+public class Mat implements AutoCloseable {
 
     public final long nativeObj;
 
+    /**
+     * Told about a Mat that became unreachable without being released, with the size of the
+     * data it still held and a Throwable recording where it was allocated.
+     */
+    public interface LeakListener {
+        void onLeak(long bytes, Throwable allocationSite);
+    }
+
     public Mat(long addr)
     {
         if (addr == 0)
             throw new java.lang.UnsupportedOperationException("Native object address is NULL");
         nativeObj = addr;
+        MatCleaner.register(this, nativeObj);
     }
 
     //
@@ -22,6 +37,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat();
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -35,6 +51,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -48,6 +65,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -61,6 +79,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -74,6 +93,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -87,6 +107,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -96,6 +117,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -109,6 +131,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+        MatCleaner.register(this, nativeObj);
 
         return;
     }
@@ -906,10 +929,43 @@ public class Mat {
         return retVal;
     }
 
+    /**
+     * Same as {@link #release()}, for try-with-resources.
+     */
     @Override
-    protected void finalize() throws Throwable {
-        n_delete(nativeObj);
-        super.finalize();
+    public void close()
+    {
+        n_release(nativeObj);
+    }
+
+    /**
+     * Frees the native headers of Mats that were garbage collected and not cleaned yet, and
+     * reports leaks among them. A daemon thread does this anyway, this is for callers that
+     * want it done before they go on.
+     */
+    public static void cleanUp()
+    {
+        MatCleaner.drain();
+    }
+
+    /**
+     * Records where each Mat is allocated from now on, and reports the ones that are garbage
+     * collected while still holding data, on the cleaner thread. For debugging, allocation
+     * sites are not free. Null turns it off.
+     */
+    public static void setLeakListener(LeakListener listener)
+    {
+        MatCleaner.setLeakListener(listener);
+    }
+
+    static long nativeBytes(long addr)
+    {
+        return n_total(addr) * n_elemSize(addr);
+    }
+
+    static void nativeDelete(long addr)
+    {
+        n_delete(addr);
     }
 
     // javadoc:Mat::toString()
@@ -1287,7 +1343,7 @@ public class Mat {
     // C++: static Mat Mat::zeros(Size size, int type)
     private static native long n_zeros(double size_width, double size_height, int type);
 
-    // native support for java finalize()
+    // native support for freeing the header, see MatCleaner
     private static native void n_delete(long nativeObj);
 
     private static native int nPutD(long self, int row, int col, int count, double[] data);
@@ -0,0 +1,77 @@
+package org.opencv.core;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Frees the native header of Mats that became unreachable, instead of Mat.finalize().
+// A daemon thread waits for collected Mats, Mat.cleanUp() drains the queue right away.
+final class MatCleaner {
+
+    private static final ReferenceQueue<Mat> QUEUE = new ReferenceQueue<Mat>();
+    // keeps the references themselves reachable until their Mat is collected
+    private static final Set<Ref> REFS = Collections.newSetFromMap(new ConcurrentHashMap<Ref, Boolean>());
+
+    private static volatile Mat.LeakListener leakListener;
+
+    static {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        clean((Ref) QUEUE.remove());
+                    } catch (InterruptedException e) {
+                        // keep cleaning, nothing else stops a daemon thread
+                    }
+                }
+            }
+        }, "MatCleaner");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private MatCleaner() {
+    }
+
+    private static final class Ref extends PhantomReference<Mat> {
+        private final long nativeObj;
+        private final Throwable allocationSite;
+
+        private Ref(Mat mat, long nativeObj, Throwable allocationSite) {
+            super(mat, QUEUE);
+            this.nativeObj = nativeObj;
+            this.allocationSite = allocationSite;
+        }
+    }
+
+    static void register(Mat mat, long nativeObj) {
+        REFS.add(new Ref(mat, nativeObj, leakListener != null ? new Throwable("Mat allocated here") : null));
+    }
+
+    static void setLeakListener(Mat.LeakListener listener) {
+        leakListener = listener;
+    }
+
+    static void drain() {
+        Ref ref;
+        while ((ref = (Ref) QUEUE.poll()) != null) {
+            clean(ref);
+        }
+    }
+
+    private static void clean(Ref ref) {
+        REFS.remove(ref);
+        Mat.LeakListener listener = leakListener;
+        if (listener != null && ref.allocationSite != null) {
+            // a Mat that was released or closed holds no data any more
+            long bytes = Mat.nativeBytes(ref.nativeObj);
+            if (bytes > 0) {
+                listener.onLeak(bytes, ref.allocationSite);
+            }
+        }
+        Mat.nativeDelete(ref.nativeObj);
+    }
+}